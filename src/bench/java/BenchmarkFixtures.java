@@ -0,0 +1,57 @@
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+
+// Data directories for the benchmarks. "small" is the sample checked in under fixtures/small. "large"
+// is the size of the real inputs and "<n>x", e.g. -p fixture=10x, is n times that, both generated by
+// DatasetGenerator from a fixed seed the first time they are needed. None of them needs the network.
+// OntologyMaker reads -DdataDir once, and JMH runs every parameter combination in a fork of its own,
+// so each fork points dataDir at its fixture before OntologyMaker or QueryHandler is first used.
+public class BenchmarkFixtures {
+    private static final String ROOT = System.getProperty("benchFixtures", "target/bench-fixtures");
+    private static final long SEED = 42L;
+
+    public static File prepare(String fixture) throws IOException {
+        File directory = new File(ROOT, fixture).getAbsoluteFile();
+        if (!new File(directory, "stations.csv").isFile()) {
+            if (fixture.equals("small")) {
+                FileUtils.copyDirectory(checkedIn(fixture), directory);
+            } else if (fixture.equals("large")) {
+                new DatasetGenerator(1, SEED).generate(directory.toPath());
+            } else if (fixture.matches("[0-9.]+x")) {
+                new DatasetGenerator(Double.parseDouble(fixture.substring(0, fixture.length() - 1)), SEED).generate(directory.toPath());
+            } else {
+                throw new IllegalArgumentException("Unknown fixture " + fixture);
+            }
+        }
+        System.setProperty("dataDir", directory.getPath());
+        return directory;
+    }
+
+    // Also builds the fixture's ontology file if it has not been built yet
+    public static File prepareOntology(String fixture) throws IOException {
+        File directory = prepare(fixture);
+        if (!OntologyMaker.DATA_DIR.equals(directory.getPath())) {
+            throw new IllegalStateException("OntologyMaker already uses " + OntologyMaker.DATA_DIR + ", run each fixture in its own fork");
+        }
+        if (!new File(OntologyMaker.ONTOLOGY_PATH).isFile()) {
+            OntologyMaker.createOntology(new BuildOptions());
+        }
+        return directory;
+    }
+
+    private static File checkedIn(String fixture) throws IOException {
+        URL url = BenchmarkFixtures.class.getResource("fixtures/" + fixture);
+        if (url == null) {
+            throw new IOException("Fixture " + fixture + " is not on the classpath");
+        }
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+    }
+}
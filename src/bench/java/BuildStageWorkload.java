@@ -0,0 +1,141 @@
+import com.esri.core.geometry.Geometry;
+import com.esri.core.geometry.OperatorImportFromWkt;
+import com.esri.core.geometry.WktImportFlags;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.commons.io.output.NullWriter;
+import org.apache.jena.rdf.model.*;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.lang.StreamRDFCounting;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.vocabulary.RDFS;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+// The work behind each bench.BuildStageBenchmark, one method per OntologyMaker stage, each fed from
+// the fixture's files the way the build reads them
+public class BuildStageWorkload implements bench.BuildStages {
+    private String rainfallPath;
+    private String maxTemperaturePath;
+    private String minTemperaturePath;
+    private String meanTemperaturePath;
+    private List<String> countyWkt = new ArrayList<>();
+    private List<Geometry> countyGeometries = new ArrayList<>();
+    private float[] stationLongitudes;
+    private float[] stationLatitudes;
+    private GridSquareIndex<Resource> stationSquares = new GridSquareIndex<>();
+    private int[] gridEastings;
+    private int[] gridNorthings;
+    private Model ontology;
+
+    public void setUp(String fixture) throws IOException {
+        File directory = BenchmarkFixtures.prepareOntology(fixture);
+        rainfallPath = new File(directory, "IE_RR_8110_V1.txt").getPath();
+        maxTemperaturePath = new File(directory, "IE_TX_8110_V2.txt").getPath();
+        minTemperaturePath = new File(directory, "IE_TN_8110_V2.txt").getPath();
+        meanTemperaturePath = new File(directory, "IE_TMEAN_8110_V2.txt").getPath();
+
+        Model counties = RDFDataMgr.loadModel(new File(directory, "county.ttl").getPath());
+        Property hasGeometry = counties.getProperty("http://www.opengis.net/ont/geosparql#hasGeometry");
+        Property asWKT = counties.getProperty("http://www.opengis.net/ont/geosparql#asWKT");
+        ResIterator countyIter = counties.listResourcesWithProperty(RDFS.label);
+        while (countyIter.hasNext()) {
+            Resource geometry = countyIter.next().getPropertyResourceValue(hasGeometry);
+            countyWkt.add(geometry.getProperty(asWKT).getString());
+        }
+        countyGeometries = importCountyWkt();
+
+        // Every 50th station row, as OntologyMaker samples them
+        try (Reader in = new FileReader(new File(directory, "stations.csv"))) {
+            List<CSVRecord> records = CSVFormat.DEFAULT.parse(in).getRecords();
+            records = records.subList(2, records.size());
+            int stations = (records.size() + 49) / 50;
+            stationLongitudes = new float[stations];
+            stationLatitudes = new float[stations];
+            for (int i = 0; i < stations; i++) {
+                CSVRecord record = records.get(i * 50);
+                int easting = (Integer.parseInt(record.get(4)) + 500) / 1000 * 1000;
+                int northing = (Integer.parseInt(record.get(5)) + 500) / 1000 * 1000;
+                stationLatitudes[i] = Float.parseFloat(record.get(6));
+                stationLongitudes[i] = Float.parseFloat(record.get(7));
+                if (!stationSquares.contains(easting, northing)) {
+                    stationSquares.put(easting, northing, ResourceFactory.createResource(OntologyMaker.NAMESPACE + "GridSquare" + (i + 1)));
+                }
+            }
+        }
+
+        List<int[]> rows = new ArrayList<>();
+        try (MonthlyGridReader grid = new MonthlyGridReader(rainfallPath)) {
+            while (grid.next()) {
+                rows.add(new int[]{grid.getEasting(), grid.getNorthing()});
+            }
+        }
+        gridEastings = new int[rows.size()];
+        gridNorthings = new int[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            gridEastings[i] = rows.get(i)[0];
+            gridNorthings[i] = rows.get(i)[1];
+        }
+
+        ontology = RDFDataMgr.loadModel(OntologyMaker.ONTOLOGY_PATH);
+    }
+
+    public Object countyWktImport() {
+        return importCountyWkt();
+    }
+
+    // Builds the county index and places every station in a county, which is what a build pays
+    public Object stationCountyAssignment() {
+        CountyLocator locator = new CountyLocator(countyGeometries);
+        int located = 0;
+        for (int i = 0; i < stationLongitudes.length; i++) {
+            if (locator.locate(stationLongitudes[i], stationLatitudes[i]) != -1) {
+                located++;
+            }
+        }
+        return located;
+    }
+
+    // The lookups the rainfall loader makes for every grid row
+    public Object gridSquareLookup() {
+        int matched = 0;
+        for (int i = 0; i < gridEastings.length; i++) {
+            if (stationSquares.get(gridEastings[i], gridNorthings[i]) != null
+                    || stationSquares.findAdjacent(gridEastings[i], gridNorthings[i]) != null) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    public Object rainfallRecords() throws IOException {
+        StreamRDFCounting output = StreamRDFLib.count();
+        new RainfallLoader(rainfallPath, stationSquares, stationLongitudes.length + 1).load(output);
+        return output.countTriples();
+    }
+
+    public Object temperatureRecords() throws IOException {
+        StreamRDFCounting output = StreamRDFLib.count();
+        new TemperatureLoader(maxTemperaturePath, minTemperaturePath, meanTemperaturePath, stationSquares).load(output);
+        return output.countTriples();
+    }
+
+    // Writes the fixture's whole ontology as Turtle, as OntologyMaker does, without the disk
+    public Object serialisation() {
+        return ontology.write(new NullWriter(), "TURTLE");
+    }
+
+    private List<Geometry> importCountyWkt() {
+        OperatorImportFromWkt importer = OperatorImportFromWkt.local();
+        List<Geometry> geometries = new ArrayList<>(countyWkt.size());
+        for (String wkt : countyWkt) {
+            geometries.add(importer.execute(WktImportFlags.wktImportDefaults, Geometry.Type.Unknown, wkt, null));
+        }
+        return geometries;
+    }
+}
@@ -0,0 +1,16 @@
+import java.io.IOException;
+
+// The work behind bench.QueryBenchmark: QueryHandler.execute over a fixture's ontology
+public class QueryWorkload implements bench.Queries {
+    private QueryHandler handler;
+
+    public void setUp(String fixture) throws IOException {
+        BenchmarkFixtures.prepareOntology(fixture);
+        // Without a result cache every call runs the query
+        handler = new QueryHandler(0);
+    }
+
+    public Object execute(int question) {
+        return handler.execute(question);
+    }
+}
@@ -0,0 +1,56 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// One benchmark per OntologyMaker stage, on the small checked-in fixture and the large generated one
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BuildStageBenchmark {
+    @Param({"small", "large"})
+    public String fixture;
+
+    private BuildStages stages;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        stages = Workloads.create("BuildStageWorkload", BuildStages.class);
+        stages.setUp(fixture);
+    }
+
+    @Benchmark
+    public Object countyWktImport() {
+        return stages.countyWktImport();
+    }
+
+    @Benchmark
+    public Object stationCountyAssignment() {
+        return stages.stationCountyAssignment();
+    }
+
+    @Benchmark
+    public Object gridSquareLookup() {
+        return stages.gridSquareLookup();
+    }
+
+    @Benchmark
+    public Object rainfallRecords() throws IOException {
+        return stages.rainfallRecords();
+    }
+
+    @Benchmark
+    public Object temperatureRecords() throws IOException {
+        return stages.temperatureRecords();
+    }
+
+    @Benchmark
+    public Object serialisation() {
+        return stages.serialisation();
+    }
+}
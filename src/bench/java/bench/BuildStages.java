@@ -0,0 +1,21 @@
+package bench;
+
+import java.io.IOException;
+
+// Implemented by BuildStageWorkload in the default package, where the ontology code lives. JMH needs
+// benchmarks in a named package, and those cannot refer to default package classes directly.
+public interface BuildStages {
+    void setUp(String fixture) throws IOException;
+
+    Object countyWktImport();
+
+    Object stationCountyAssignment();
+
+    Object gridSquareLookup();
+
+    Object rainfallRecords() throws IOException;
+
+    Object temperatureRecords() throws IOException;
+
+    Object serialisation();
+}
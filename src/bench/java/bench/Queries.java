@@ -0,0 +1,11 @@
+package bench;
+
+import java.io.IOException;
+
+// Implemented by QueryWorkload in the default package
+public interface Queries {
+    void setUp(String fixture) throws IOException;
+
+    // question is 0 for question1.sparql
+    Object execute(int question);
+}
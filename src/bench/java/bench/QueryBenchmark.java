@@ -0,0 +1,36 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// QueryHandler.execute for each canned question over a fixture's ontology. The result cache is turned
+// off, so every call runs the query.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+    @Param({"small", "large"})
+    public String fixture;
+
+    // question1.sparql ... question8.sparql
+    @Param({"1", "2", "3", "4", "5", "6", "7", "8"})
+    public int question;
+
+    private Queries queries;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        queries = Workloads.create("QueryWorkload", Queries.class);
+        queries.setUp(fixture);
+    }
+
+    @Benchmark
+    public Object execute() {
+        return queries.execute(question - 1);
+    }
+}
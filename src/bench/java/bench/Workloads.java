@@ -0,0 +1,15 @@
+package bench;
+
+// Creates the default package workloads, which can only be reached by name from here
+final class Workloads {
+    private Workloads() {
+    }
+
+    static <T> T create(String className, Class<T> type) {
+        try {
+            return type.cast(Class.forName(className).getDeclaredConstructor().newInstance());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create benchmark workload " + className, e);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+import com.esri.core.geometry.Geometry;
+import com.esri.core.geometry.OperatorExportToESRIShape;
+import com.esri.core.geometry.OperatorImportFromESRIShape;
+import com.esri.core.geometry.ShapeExportFlags;
+import com.esri.core.geometry.ShapeImportFlags;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.listeners.StatementListener;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.system.StreamOps;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWrapper;
+import org.apache.jena.riot.system.StreamRDFWriter;
+import org.apache.jena.sparql.graph.GraphFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+// The intermediate results of an incremental build, kept in a directory next to the ontology file.
+// Every part is saved together with a fingerprint of the inputs it was made from, and a later build
+// only reuses it when it comes up with the same fingerprint. Graphs are kept as RDF Thrift, which
+// reads back much faster than Turtle. A part's fingerprint is removed before its data is replaced and
+// written again after, so a build that dies half way never leaves a part that looks current.
+public class BuildCache {
+    // Part of every fingerprint. Raise it whenever a change to the build makes different triples
+    // from the same inputs, so parts made by older builds are not reused.
+    private static final String FORMAT = "2";
+
+    private final Path directory;
+
+    public BuildCache(String directory) throws IOException {
+        this.directory = Paths.get(directory);
+        Files.createDirectories(this.directory);
+    }
+
+    public static String fingerprint(String... inputs) {
+        StringBuilder text = new StringBuilder(FORMAT);
+        for (String input : inputs) {
+            text.append('\n').append(input);
+        }
+        return DigestUtils.sha256Hex(text.toString());
+    }
+
+    // A hash of the file's contents, which unlike its modification time survives a fresh download of
+    // the same data. An entry of an archive is identified by the CRC and size the archive records.
+    public static String fileFingerprint(String path) throws IOException {
+        int separator = path.indexOf(MonthlyGridReader.ARCHIVE_SEPARATOR);
+        if (separator >= 0) {
+            String name = path.substring(separator + MonthlyGridReader.ARCHIVE_SEPARATOR.length());
+            try (ZipFile archive = new ZipFile(path.substring(0, separator))) {
+                ZipEntry entry = archive.getEntry(name);
+                return entry == null ? "missing " + path : "zip " + name + " " + entry.getCrc() + " " + entry.getSize();
+            }
+        }
+
+        File file = new File(path);
+        if (!file.isFile()) {
+            return "missing " + path;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            return DigestUtils.sha256Hex(in);
+        }
+    }
+
+    public boolean isCurrent(String part, String fingerprint) {
+        Path saved = fingerprintPath(part);
+        try {
+            return Files.isRegularFile(saved)
+                    && new String(Files.readAllBytes(saved), StandardCharsets.UTF_8).equals(fingerprint);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Sends the saved triples of a part to output, without starting or finishing it
+    public void replay(String part, StreamRDF output) {
+        RDFDataMgr.parse(new StreamRDFWrapper(output) {
+            public void start() {
+            }
+
+            public void finish() {
+            }
+        }, dataPath(part, ".rt").toString(), Lang.RDFTHRIFT);
+    }
+
+    public void save(String part, String fingerprint, Graph graph) throws IOException {
+        try (PartWriter writer = write(part, fingerprint)) {
+            StreamOps.sendGraphToStream(graph, writer.getStream());
+            writer.commit();
+        }
+    }
+
+    // Starts replacing a part. What is sent to the writer only becomes the part once it is committed.
+    public PartWriter write(String part, String fingerprint) throws IOException {
+        Files.deleteIfExists(fingerprintPath(part));
+        return new PartWriter(part, fingerprint);
+    }
+
+    public void saveGeometries(String part, String fingerprint, List<Geometry> geometries) throws IOException {
+        Files.deleteIfExists(fingerprintPath(part));
+        Path temporary = dataPath(part, ".shapes.tmp");
+        OperatorExportToESRIShape exporter = OperatorExportToESRIShape.local();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(geometries.size());
+            for (Geometry geometry : geometries) {
+                ByteBuffer shape = exporter.execute(ShapeExportFlags.ShapeExportDefaults, geometry);
+                out.writeInt(shape.remaining());
+                out.write(shape.array(), shape.arrayOffset() + shape.position(), shape.remaining());
+            }
+        }
+        Files.move(temporary, dataPath(part, ".shapes"), StandardCopyOption.REPLACE_EXISTING);
+        Files.write(fingerprintPath(part), fingerprint.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public List<Geometry> readGeometries(String part) throws IOException {
+        OperatorImportFromESRIShape importer = OperatorImportFromESRIShape.local();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(dataPath(part, ".shapes"))))) {
+            int count = in.readInt();
+            List<Geometry> geometries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                byte[] shape = new byte[in.readInt()];
+                in.readFully(shape);
+                geometries.add(importer.execute(ShapeImportFlags.ShapeImportDefaults, Geometry.Type.Unknown, ByteBuffer.wrap(shape).order(ByteOrder.LITTLE_ENDIAN)));
+            }
+            return geometries;
+        }
+    }
+
+    // Records a fingerprint that has no data of its own, such as that of a finished output
+    public void saveFingerprint(String part, String fingerprint) throws IOException {
+        Files.write(fingerprintPath(part), fingerprint.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void forget(String part) {
+        try {
+            Files.deleteIfExists(fingerprintPath(part));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Collects every statement added to model until it is stopped
+    public static Recorder record(Model model) {
+        Recorder recorder = new Recorder(model);
+        model.register(recorder);
+        return recorder;
+    }
+
+    private Path dataPath(String part, String suffix) {
+        return directory.resolve(part + suffix);
+    }
+
+    private Path fingerprintPath(String part) {
+        return directory.resolve(part + ".fingerprint");
+    }
+
+    public class PartWriter implements Closeable {
+        private final String part;
+        private final String fingerprint;
+        private final Path temporary;
+        private final OutputStream out;
+        private final StreamRDF stream;
+        private boolean committed;
+
+        private PartWriter(String part, String fingerprint) throws IOException {
+            this.part = part;
+            this.fingerprint = fingerprint;
+            temporary = dataPath(part, ".rt.tmp");
+            out = new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16);
+            stream = StreamRDFWriter.getWriterStream(out, RDFFormat.RDF_THRIFT);
+            stream.start();
+        }
+
+        public StreamRDF getStream() {
+            return stream;
+        }
+
+        // Sends each triple to output as well as to the part
+        public StreamRDF tee(StreamRDF output) {
+            return new StreamRDFWrapper(output) {
+                public void triple(Triple triple) {
+                    other.triple(triple);
+                    stream.triple(triple);
+                }
+            };
+        }
+
+        public void commit() throws IOException {
+            stream.finish();
+            out.close();
+            Files.move(temporary, dataPath(part, ".rt"), StandardCopyOption.REPLACE_EXISTING);
+            Files.write(fingerprintPath(part), fingerprint.getBytes(StandardCharsets.UTF_8));
+            committed = true;
+        }
+
+        // Throws away a part that was not committed
+        public void close() throws IOException {
+            if (!committed) {
+                out.close();
+                Files.deleteIfExists(temporary);
+            }
+        }
+    }
+
+    public static class Recorder extends StatementListener {
+        private final Model model;
+        private final Graph graph = GraphFactory.createGraphMem();
+
+        private Recorder(Model model) {
+            this.model = model;
+        }
+
+        public void addedStatement(Statement statement) {
+            graph.add(statement.asTriple());
+        }
+
+        public Graph stop() {
+            model.unregister(this);
+            return graph;
+        }
+    }
+}
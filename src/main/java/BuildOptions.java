@@ -0,0 +1,93 @@
+// Switches for OntologyMaker.createOntology. The defaults reproduce the original single threaded build.
+public class BuildOptions {
+    private boolean parallel = false;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private boolean streamingOutput = false;
+    private boolean tdbStore = false;
+    private ReasoningMode materialisedReasoning = ReasoningMode.NONE;
+    private boolean incremental = false;
+    private boolean refreshSources = false;
+    private boolean gridFile = false;
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    // Load the rainfall and temperature datasets concurrently once the station grid squares are fixed
+    public BuildOptions setParallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public BuildOptions setThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    public boolean isStreamingOutput() {
+        return streamingOutput;
+    }
+
+    // Write weather records to the ontology file as they are created rather than building them in the model
+    public BuildOptions setStreamingOutput(boolean streamingOutput) {
+        this.streamingOutput = streamingOutput;
+        return this;
+    }
+
+    public boolean isTdbStore() {
+        return tdbStore;
+    }
+
+    // Also bulk load the result into the TDB2 database at OntologyMaker.STORE_PATH
+    public BuildOptions setTdbStore(boolean tdbStore) {
+        this.tdbStore = tdbStore;
+        return this;
+    }
+
+    public ReasoningMode getMaterialisedReasoning() {
+        return materialisedReasoning;
+    }
+
+    // Run this reasoner once at build time and write its inferred triples into the ontology file
+    public BuildOptions setMaterialisedReasoning(ReasoningMode materialisedReasoning) {
+        this.materialisedReasoning = materialisedReasoning;
+        return this;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    // Keep the counties, stations and each weather dataset in OntologyMaker.BUILD_CACHE_PATH, and only
+    // make again the ones whose source files have changed since they were kept
+    public BuildOptions setIncremental(boolean incremental) {
+        this.incremental = incremental;
+        return this;
+    }
+
+    public boolean isRefreshSources() {
+        return refreshSources;
+    }
+
+    // Ask upstream, or the -DsourceMirror, whether source files that are already on disk have changed,
+    // instead of only fetching the missing ones
+    public BuildOptions setRefreshSources(boolean refreshSources) {
+        this.refreshSources = refreshSources;
+        return this;
+    }
+
+    public boolean isGridFile() {
+        return gridFile;
+    }
+
+    // Also merge the monthly grids into the ClimateGridFile at OntologyMaker.GRID_FILE_PATH, which query
+    // handlers map to look up any grid square by easting, northing and month
+    public BuildOptions setGridFile(boolean gridFile) {
+        this.gridFile = gridFile;
+        return this;
+    }
+}
@@ -0,0 +1,174 @@
+import org.apache.jena.atlas.json.JsonArray;
+import org.apache.jena.atlas.json.JsonNumber;
+import org.apache.jena.atlas.json.JsonObject;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Wall time, CPU time, allocation and output of every stage of an ontology build, written out as JSON
+// so builds can be compared with each other. CPU time and allocation are those of the thread that ran
+// the stage, so work a stage hands to other threads (such as the TDB2 bulk loader) is not included.
+public class BuildReport {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final long startMillis = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private final List<Stage> stages = new ArrayList<>();
+
+    public Stage start(String name) {
+        Stage stage = new Stage(name);
+        synchronized (stages) {
+            stages.add(stage);
+        }
+        return stage;
+    }
+
+    public JsonObject toJson(String buildId, BuildOptions options) {
+        JsonObject json = new JsonObject();
+        json.put("buildId", buildId);
+        json.put("startedAt", startMillis);
+        json.put("wallMillis", JsonNumber.value((System.nanoTime() - startNanos) / 1e6));
+
+        JsonObject settings = new JsonObject();
+        settings.put("parallel", options.isParallel());
+        settings.put("threads", options.getThreads());
+        settings.put("streamingOutput", options.isStreamingOutput());
+        settings.put("tdbStore", options.isTdbStore());
+        settings.put("materialisedReasoning", options.getMaterialisedReasoning().getName());
+        settings.put("incremental", options.isIncremental());
+        settings.put("refreshSources", options.isRefreshSources());
+        settings.put("gridFile", options.isGridFile());
+        json.put("options", settings);
+
+        JsonArray stageList = new JsonArray();
+        synchronized (stages) {
+            for (Stage stage : stages) {
+                stageList.add(stage.toJson());
+            }
+        }
+        json.put("stages", stageList);
+        return json;
+    }
+
+    public void writeTo(Path path, String buildId, BuildOptions options) throws IOException {
+        Files.write(path, toJson(buildId, options).toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long threadCpuNanos() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+    }
+
+    private static long threadAllocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    // Started and ended on the same thread. Counts left at -1 are not reported.
+    public static class Stage {
+        private final String name;
+        private final String thread = Thread.currentThread().getName();
+        private final long startNanos = System.nanoTime();
+        private final long startCpuNanos = threadCpuNanos();
+        private final long startAllocatedBytes = threadAllocatedBytes();
+        // Counts as Long, durations as Double milliseconds
+        private final Map<String, Number> extras = new LinkedHashMap<>();
+        private long wallNanos = -1;
+        private long cpuNanos = -1;
+        private long allocatedBytes = -1;
+        private long rowsIn = -1;
+        private long individualsOut = -1;
+        private long triplesOut = -1;
+
+        private Stage(String name) {
+            this.name = name;
+        }
+
+        public synchronized Stage rowsIn(long rows) {
+            rowsIn = rows;
+            return this;
+        }
+
+        public synchronized Stage individualsOut(long individuals) {
+            individualsOut = individuals;
+            return this;
+        }
+
+        public synchronized Stage triplesOut(long triples) {
+            triplesOut = triples;
+            return this;
+        }
+
+        // Any other figure worth keeping for the stage, written as it is given
+        public synchronized Stage put(String key, long value) {
+            extras.put(key, value);
+            return this;
+        }
+
+        // A duration worth keeping for the stage, such as the time spent in one part of it. It is
+        // written in milliseconds, so key should end in Millis.
+        public synchronized Stage putNanos(String key, long nanos) {
+            extras.put(key, nanos < 0 ? -1 : nanos / 1e6);
+            return this;
+        }
+
+        public synchronized void end() {
+            wallNanos = System.nanoTime() - startNanos;
+            long cpu = threadCpuNanos();
+            cpuNanos = cpu < 0 || startCpuNanos < 0 ? -1 : cpu - startCpuNanos;
+            long allocated = threadAllocatedBytes();
+            allocatedBytes = allocated < 0 || startAllocatedBytes < 0 ? -1 : allocated - startAllocatedBytes;
+        }
+
+        synchronized JsonObject toJson() {
+            JsonObject json = new JsonObject();
+            json.put("name", name);
+            json.put("thread", thread);
+            json.put("completed", wallNanos >= 0);
+            putMillisIfKnown(json, "wallMillis", wallNanos);
+            putMillisIfKnown(json, "cpuMillis", cpuNanos);
+            putIfKnown(json, "allocatedBytes", allocatedBytes);
+            putIfKnown(json, "rowsIn", rowsIn);
+            putIfKnown(json, "individualsOut", individualsOut);
+            putIfKnown(json, "triplesOut", triplesOut);
+            if (triplesOut >= 0 && wallNanos > 0) {
+                json.put("triplesPerSecond", JsonNumber.value(triplesOut / (wallNanos / 1e9)));
+            }
+            for (Map.Entry<String, Number> extra : extras.entrySet()) {
+                Number value = extra.getValue();
+                if (value instanceof Double) {
+                    if (value.doubleValue() >= 0) {
+                        json.put(extra.getKey(), JsonNumber.value(value.doubleValue()));
+                    }
+                } else {
+                    putIfKnown(json, extra.getKey(), value.longValue());
+                }
+            }
+            return json;
+        }
+
+        private static void putIfKnown(JsonObject json, String key, long value) {
+            if (value >= 0) {
+                json.put(key, value);
+            }
+        }
+
+        private static void putMillisIfKnown(JsonObject json, String key, long nanos) {
+            if (nanos >= 0) {
+                json.put(key, JsonNumber.value(nanos / 1e6));
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+import org.apache.jena.riot.system.StreamRDF;
+
+import java.io.IOException;
+
+// Runs a DatasetLoader through the BuildCache. While the fingerprint of the loader's inputs matches
+// the saved one the saved triples are replayed instead, without reading the source at all.
+public class CachedLoader implements DatasetLoader {
+    private final DatasetLoader loader;
+    private final BuildCache cache;
+    private final String fingerprint;
+
+    public CachedLoader(DatasetLoader loader, BuildCache cache, String fingerprint) {
+        this.loader = loader;
+        this.cache = cache;
+        this.fingerprint = fingerprint;
+    }
+
+    public String getName() {
+        return loader.getName();
+    }
+
+    // Returns -1 when the triples were replayed, as no rows were read
+    public long load(StreamRDF output) throws IOException {
+        String part = loader.getName().toLowerCase();
+        if (cache.isCurrent(part, fingerprint)) {
+            cache.replay(part, output);
+            System.out.println("Reused the saved " + loader.getName() + " Dataset");
+            return -1;
+        }
+
+        try (BuildCache.PartWriter writer = cache.write(part, fingerprint)) {
+            long rows = loader.load(writer.tee(output));
+            writer.commit();
+            return rows;
+        }
+    }
+}
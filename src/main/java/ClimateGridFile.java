@@ -0,0 +1,207 @@
+import java.io.*;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// The four Met Eireann monthly grids (rainfall and maximum, mean and minimum temperature) merged into
+// one binary file of fixed size rows, sorted by easting then northing as the grid files are. The
+// file is memory mapped rather than read, so a lookup reads straight from the page cache: none of it
+// is on the heap, and every process that maps the same file shares the one copy.
+//
+// Layout, big endian: "IECG", the format version and the row count, then per row the easting, the
+// northing, twelve int rainfalls and twelve float maximum, mean and minimum temperatures. A grid
+// square only one of the grid files covers has MISSING_RAINFALL or NaN for the others.
+public class ClimateGridFile {
+    public static final int MISSING_RAINFALL = Integer.MIN_VALUE;
+
+    private static final int MAGIC = 0x49454347;
+    // Part of the build fingerprint, so a file in an older format is written again
+    static final int VERSION = 2;
+    private static final int HEADER_SIZE = 12;
+    private static final int MONTHS = 12;
+    private static final int ROW_SIZE = 8 + 4 * 4 * MONTHS;
+    private static final int RAINFALL = 8;
+    private static final int TEMPERATURE_MAX = RAINFALL + 4 * MONTHS;
+    private static final int TEMPERATURE_MEAN = TEMPERATURE_MAX + 4 * MONTHS;
+    private static final int TEMPERATURE_MIN = TEMPERATURE_MEAN + 4 * MONTHS;
+
+    private final ByteBuffer buffer;
+    private final int rows;
+
+    private ClimateGridFile(ByteBuffer buffer, String path) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException(path + " is not a climate grid file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException(path + " has format version " + buffer.getInt(4) + ", expected " + VERSION);
+        }
+        rows = buffer.getInt(8);
+        if (buffer.capacity() != HEADER_SIZE + (long) rows * ROW_SIZE) {
+            throw new IOException(path + " is truncated");
+        }
+    }
+
+    // The mapping stays valid after the channel is closed, until the buffer is garbage collected
+    public static ClimateGridFile map(String path) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            return new ClimateGridFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), path);
+        }
+    }
+
+    // Unmaps the file straight away rather than once the buffer is garbage collected, where the JVM
+    // allows it. Nothing may read the grids afterwards.
+    public void close() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Left to the garbage collector
+        }
+    }
+
+    // Merges the grids into path a row at a time as they are read, replacing it only once the new file
+    // is complete. The grids must list their squares in ascending order. Returns the number of grid
+    // squares written.
+    public static int write(String path, String rainfallGrid, String maxGrid, String minGrid, String meanGrid) throws IOException {
+        Path target = Paths.get(path);
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        int rows = 0;
+        boolean written = false;
+        try {
+            try (MonthlyGridReader rainfall = new MonthlyGridReader(rainfallGrid);
+                 TemperatureGridReader temperatures = new TemperatureGridReader(maxGrid, minGrid, meanGrid);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                // The row count is filled in once it is known
+                out.writeInt(0);
+
+                boolean hasRainfall = rainfall.next();
+                boolean hasTemperature = temperatures.next();
+                while (hasRainfall || hasTemperature) {
+                    int comparison = !hasTemperature ? -1 : !hasRainfall ? 1 : compareSquares(rainfall.getEasting(),
+                            rainfall.getNorthing(), temperatures.getEasting(), temperatures.getNorthing());
+                    boolean writeRainfall = comparison <= 0;
+                    boolean writeTemperature = comparison >= 0;
+
+                    out.writeInt(writeRainfall ? rainfall.getEasting() : temperatures.getEasting());
+                    out.writeInt(writeRainfall ? rainfall.getNorthing() : temperatures.getNorthing());
+                    for (int month = 0; month < MONTHS; month++) {
+                        out.writeInt(writeRainfall ? rainfall.getInt(month) : MISSING_RAINFALL);
+                    }
+                    for (int month = 0; month < MONTHS; month++) {
+                        out.writeFloat(writeTemperature ? temperatures.getMax(month) : Float.NaN);
+                    }
+                    for (int month = 0; month < MONTHS; month++) {
+                        out.writeFloat(writeTemperature ? temperatures.getMean(month) : Float.NaN);
+                    }
+                    for (int month = 0; month < MONTHS; month++) {
+                        out.writeFloat(writeTemperature ? temperatures.getMin(month) : Float.NaN);
+                    }
+                    rows++;
+
+                    if (writeRainfall) {
+                        int easting = rainfall.getEasting();
+                        int northing = rainfall.getNorthing();
+                        hasRainfall = rainfall.next();
+                        if (hasRainfall) {
+                            checkOrder(rainfallGrid, rainfall.getRowNumber(), easting, northing, rainfall.getEasting(), rainfall.getNorthing());
+                        }
+                    }
+                    if (writeTemperature) {
+                        int easting = temperatures.getEasting();
+                        int northing = temperatures.getNorthing();
+                        hasTemperature = temperatures.next();
+                        if (hasTemperature) {
+                            checkOrder(maxGrid, temperatures.getRowNumber(), easting, northing, temperatures.getEasting(), temperatures.getNorthing());
+                        }
+                    }
+                }
+            }
+            try (RandomAccessFile file = new RandomAccessFile(temporary.toFile(), "rw")) {
+                file.seek(8);
+                file.writeInt(rows);
+            }
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+            written = true;
+        } finally {
+            if (!written) {
+                Files.deleteIfExists(temporary);
+            }
+        }
+        return rows;
+    }
+
+    // The grids are merged as they are read, so each has to come in order
+    private static void checkOrder(String source, long row, int easting, int northing, int nextEasting, int nextNorthing) throws IOException {
+        if (compareSquares(easting, northing, nextEasting, nextNorthing) >= 0) {
+            throw new IOException(source + " is not sorted by easting then northing at row " + row + ": ("
+                    + nextEasting + ", " + nextNorthing + ") follows (" + easting + ", " + northing + ")");
+        }
+    }
+
+    public int getRowCount() {
+        return rows;
+    }
+
+    // The row of a grid square, or -1 if no grid covers it
+    public int find(int easting, int northing) {
+        int low = 0;
+        int high = rows - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int offset = offset(middle);
+            int comparison = compareSquares(buffer.getInt(offset), buffer.getInt(offset + 4), easting, northing);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    public int getEasting(int row) {
+        return buffer.getInt(offset(row));
+    }
+
+    public int getNorthing(int row) {
+        return buffer.getInt(offset(row) + 4);
+    }
+
+    // month is 0 for January through 11 for December, as in MonthlyGridReader
+    public int getRainfall(int row, int month) {
+        return buffer.getInt(offset(row) + RAINFALL + 4 * month);
+    }
+
+    public float getTemperatureMax(int row, int month) {
+        return buffer.getFloat(offset(row) + TEMPERATURE_MAX + 4 * month);
+    }
+
+    public float getTemperatureMean(int row, int month) {
+        return buffer.getFloat(offset(row) + TEMPERATURE_MEAN + 4 * month);
+    }
+
+    public float getTemperatureMin(int row, int month) {
+        return buffer.getFloat(offset(row) + TEMPERATURE_MIN + 4 * month);
+    }
+
+    private static int offset(int row) {
+        return HEADER_SIZE + row * ROW_SIZE;
+    }
+
+    private static int compareSquares(int easting, int northing, int otherEasting, int otherNorthing) {
+        int comparison = Integer.compare(easting, otherEasting);
+        return comparison != 0 ? comparison : Integer.compare(northing, otherNorthing);
+    }
+}
@@ -0,0 +1,98 @@
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.QueryBuildException;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.expr.ExprEvalException;
+import org.apache.jena.sparql.expr.ExprList;
+import org.apache.jena.sparql.expr.NodeValue;
+import org.apache.jena.sparql.function.Function;
+import org.apache.jena.sparql.function.FunctionEnv;
+import org.apache.jena.sparql.function.FunctionFactory;
+import org.apache.jena.sparql.function.FunctionRegistry;
+import org.apache.jena.sparql.util.Symbol;
+
+// base:rainfallAt(easting, northing, month) and the matching temperatureMaxAt, temperatureMeanAt and
+// temperatureMinAt read a value of any 1 km grid square from the ClimateGridFile the query handler
+// mapped, whether or not the ontology holds a record for that square. month is either a month of the
+// ontology, such as base:January, or 1 to 12. The call is an error, leaving its variable unbound, when
+// no grid file was mapped or the grid has no value there.
+public class ClimateGridFunction implements Function {
+    // Where the query handler puts its ClimateGridFile in the context of its dataset
+    public static final Symbol GRID_FILE = Symbol.create(OntologyVocabulary.NAMESPACE + "climateGridFile");
+
+    private static final Node[] VALUES = {
+            OntologyVocabulary.RAINFALL_AT, OntologyVocabulary.TEMPERATURE_MAX_AT,
+            OntologyVocabulary.TEMPERATURE_MEAN_AT, OntologyVocabulary.TEMPERATURE_MIN_AT
+    };
+
+    private final int value;
+
+    private ClimateGridFunction(int value) {
+        this.value = value;
+    }
+
+    public static void register() {
+        FunctionRegistry registry = FunctionRegistry.get();
+        for (int i = 0; i < VALUES.length; i++) {
+            final int value = i;
+            registry.put(VALUES[i].getURI(), new FunctionFactory() {
+                public Function create(String uri) {
+                    return new ClimateGridFunction(value);
+                }
+            });
+        }
+    }
+
+    public void build(String uri, ExprList args) {
+        if (args.size() != 3) {
+            throw new QueryBuildException("<" + uri + "> takes an easting, a northing and a month");
+        }
+    }
+
+    public NodeValue exec(Binding binding, ExprList args, String uri, FunctionEnv env) {
+        ClimateGridFile grids = (ClimateGridFile) env.getContext().get(GRID_FILE);
+        if (grids == null) {
+            throw new ExprEvalException("No climate grid file is mapped");
+        }
+        NodeValue easting = args.get(0).eval(binding, env);
+        NodeValue northing = args.get(1).eval(binding, env);
+        int month = month(args.get(2).eval(binding, env));
+        if (!easting.isInteger() || !northing.isInteger()) {
+            throw new ExprEvalException("Grid square coordinates must be integers");
+        }
+
+        int row = grids.find(easting.getInteger().intValue(), northing.getInteger().intValue());
+        if (row < 0) {
+            throw new ExprEvalException("No grid covers (" + easting + ", " + northing + ")");
+        }
+        if (value == 0) {
+            int rainfall = grids.getRainfall(row, month);
+            if (rainfall == ClimateGridFile.MISSING_RAINFALL) {
+                throw new ExprEvalException("No rainfall at (" + easting + ", " + northing + ")");
+            }
+            return NodeValue.makeInteger(rainfall);
+        }
+
+        float temperature = value == 1 ? grids.getTemperatureMax(row, month)
+                : value == 2 ? grids.getTemperatureMean(row, month) : grids.getTemperatureMin(row, month);
+        if (Float.isNaN(temperature)) {
+            throw new ExprEvalException("No temperature at (" + easting + ", " + northing + ")");
+        }
+        return NodeValue.makeFloat(temperature);
+    }
+
+    private static int month(NodeValue month) {
+        if (month.isInteger()) {
+            int number = month.getInteger().intValue();
+            if (number >= 1 && number <= 12) {
+                return number - 1;
+            }
+        } else if (month.isIRI()) {
+            for (int i = 0; i < OntologyVocabulary.MONTHS.length; i++) {
+                if (OntologyVocabulary.MONTHS[i].equals(month.asNode())) {
+                    return i;
+                }
+            }
+        }
+        throw new ExprEvalException("Not a month: " + month);
+    }
+}
@@ -0,0 +1,102 @@
+import org.apache.jena.query.*;
+import org.apache.jena.sparql.algebra.Algebra;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.engine.Plan;
+import org.apache.jena.sparql.engine.QueryEngineFactory;
+import org.apache.jena.sparql.engine.QueryEngineRegistry;
+import org.apache.jena.sparql.engine.QueryExecutionBase;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.main.QueryEngineMain;
+import org.apache.jena.sparql.util.Context;
+import org.apache.jena.tdb2.sys.TDBInternal;
+
+// A SPARQL query that is parsed, turned into algebra and optimised once. Every execution reuses the
+// optimised algebra through its own query engine instead of redoing that work. A TDB2 dataset keeps
+// its own engine, whose optimiser plans against the store's indexes, and only reuses the parsed query.
+public class CompiledQuery {
+    // Optimising turns the patterns that use these properties into calls of the function
+    static {
+        StationHeightFunction.register();
+        ClimateGridFunction.register();
+    }
+
+    private final String text;
+    private final String key;
+    private final Query query;
+    private final Op op;
+    private final QueryEngineFactory engineFactory = new EngineFactory();
+
+    private CompiledQuery(String text, Query query, Op op) {
+        this.text = text;
+        this.key = CompiledQueryCache.normalise(text);
+        this.query = query;
+        this.op = op;
+    }
+
+    public static CompiledQuery compile(String text) {
+        Query query = QueryFactory.create(text);
+        Op op = Algebra.optimize(Algebra.compile(query), ARQ.getContext());
+        return new CompiledQuery(text, query, op);
+    }
+
+    public QueryExecution createExecution(Dataset dataset) {
+        DatasetGraph datasetGraph = dataset.asDatasetGraph();
+        Context context = Context.setupContextExec(ARQ.getContext(), datasetGraph);
+        QueryEngineFactory factory = engineFactory.accept(query, datasetGraph, context) ? engineFactory
+                : QueryEngineRegistry.findFactory(query, datasetGraph, context);
+        return new QueryExecutionBase(query, dataset, context, factory);
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    // The query text without comments or redundant whitespace
+    public String getKey() {
+        return key;
+    }
+
+    public Query getQuery() {
+        return query;
+    }
+
+    public Op getOp() {
+        return op;
+    }
+
+    private class Engine extends QueryEngineMain {
+        Engine(DatasetGraph dataset, Binding input, Context context) {
+            super(query, dataset, input, context);
+        }
+
+        @Override
+        protected Op createOp(Query query) {
+            return op;
+        }
+
+        // Already optimised when compiled
+        @Override
+        protected Op modifyOp(Op op) {
+            return op;
+        }
+    }
+
+    private class EngineFactory implements QueryEngineFactory {
+        public boolean accept(Query query, DatasetGraph dataset, Context context) {
+            return query == CompiledQuery.this.query && !TDBInternal.isTDB2(dataset);
+        }
+
+        public Plan create(Query query, DatasetGraph dataset, Binding input, Context context) {
+            return new Engine(dataset, input, context).getPlan();
+        }
+
+        public boolean accept(Op op, DatasetGraph dataset, Context context) {
+            return false;
+        }
+
+        public Plan create(Op op, DatasetGraph dataset, Binding input, Context context) {
+            return QueryEngineMain.getFactory().create(op, dataset, input, context);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Least recently used cache of compiled ad-hoc queries. Queries that only differ in whitespace or
+// comments share an entry.
+public class CompiledQueryCache {
+    private final LinkedHashMap<String, CompiledQuery> entries;
+
+    public CompiledQueryCache(final int capacity) {
+        entries = new LinkedHashMap<String, CompiledQuery>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledQuery> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public CompiledQuery get(String text) {
+        String key = normalise(text);
+        synchronized (entries) {
+            CompiledQuery compiled = entries.get(key);
+            if (compiled != null) {
+                return compiled;
+            }
+        }
+
+        // Compile outside the lock, a query compiled twice by a race is harmless
+        CompiledQuery compiled = CompiledQuery.compile(text);
+        synchronized (entries) {
+            entries.put(key, compiled);
+        }
+        return compiled;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    // Drops comments and collapses whitespace runs, leaving string literals and IRIs untouched
+    static String normalise(String text) {
+        StringBuilder key = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '#') {
+                while (i < text.length() && text.charAt(i) != '\n' && text.charAt(i) != '\r') {
+                    i++;
+                }
+                pendingSpace = true;
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                pendingSpace = true;
+                i++;
+                continue;
+            }
+            if (pendingSpace && key.length() > 0) {
+                key.append(' ');
+            }
+            pendingSpace = false;
+
+            if (c == '"' || c == '\'' || c == '<') {
+                int end = endOfToken(text, i);
+                key.append(text, i, end);
+                i = end;
+            } else {
+                key.append(c);
+                i++;
+            }
+        }
+        return key.toString();
+    }
+
+    // End of the quoted string or IRI starting at start. A '<' that turns out to be a comparison
+    // simply ends at the next whitespace.
+    private static int endOfToken(String text, int start) {
+        char open = text.charAt(start);
+        char close = open == '<' ? '>' : open;
+        int i = start + 1;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '\\' && open != '<') {
+                i += 2;
+                continue;
+            }
+            if (c == close) {
+                return i + 1;
+            }
+            if (open == '<' && Character.isWhitespace(c)) {
+                return i;
+            }
+            i++;
+        }
+        return text.length();
+    }
+}
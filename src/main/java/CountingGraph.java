@@ -0,0 +1,67 @@
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.sparql.graph.GraphWrapper;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.util.iterator.WrappedIterator;
+
+// Counts the triples ARQ reads from a graph. The count is per thread, since a query is evaluated on
+// the thread that iterates its results.
+public class CountingGraph extends GraphWrapper {
+    private static final ThreadLocal<long[]> TOUCHED = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    public CountingGraph(Graph graph) {
+        super(graph);
+    }
+
+    // Triples read on this thread since the last call
+    public static long takeCount() {
+        long[] touched = TOUCHED.get();
+        long count = touched[0];
+        touched[0] = 0;
+        return count;
+    }
+
+    @Override
+    public ExtendedIterator<Triple> find(Triple match) {
+        return counted(super.find(match));
+    }
+
+    @Override
+    public ExtendedIterator<Triple> find(Node s, Node p, Node o) {
+        return counted(super.find(s, p, o));
+    }
+
+    @Override
+    public boolean contains(Node s, Node p, Node o) {
+        return counted(super.contains(s, p, o));
+    }
+
+    @Override
+    public boolean contains(Triple t) {
+        return counted(super.contains(t));
+    }
+
+    private static boolean counted(boolean found) {
+        if (found) {
+            TOUCHED.get()[0]++;
+        }
+        return found;
+    }
+
+    private static ExtendedIterator<Triple> counted(ExtendedIterator<Triple> triples) {
+        final long[] touched = TOUCHED.get();
+        return new WrappedIterator<Triple>(triples, true) {
+            @Override
+            public Triple next() {
+                touched[0]++;
+                return super.next();
+            }
+        };
+    }
+}
@@ -0,0 +1,65 @@
+import com.esri.core.geometry.*;
+
+import java.util.List;
+
+// Point-in-county lookups over the GeoHive county polygons. The polygons are accelerated once and
+// their bounding boxes are put in a QuadTree, so a lookup only runs the full containment test against
+// the counties whose bounding box holds the point.
+public class CountyLocator {
+    private static final int QUAD_TREE_HEIGHT = 8;
+
+    private final Geometry[] geometries;
+    private final Envelope2D[] envelopes;
+    private final QuadTree quadTree;
+    private final SpatialReference spatialReference = SpatialReference.create("WGS84");
+    private final OperatorContains contains = OperatorContains.local();
+
+    public CountyLocator(List<Geometry> countyGeometries) {
+        geometries = countyGeometries.toArray(new Geometry[countyGeometries.size()]);
+        envelopes = new Envelope2D[geometries.length];
+
+        Envelope2D extent = new Envelope2D();
+        extent.setEmpty();
+        for (int i = 0; i < geometries.length; i++) {
+            Envelope2D envelope = new Envelope2D();
+            geometries[i].queryEnvelope2D(envelope);
+            envelopes[i] = envelope;
+            extent.merge(envelope);
+            if (contains.canAccelerateGeometry(geometries[i])) {
+                contains.accelerateGeometry(geometries[i], spatialReference, Geometry.GeometryAccelerationDegree.enumMedium);
+            }
+        }
+
+        quadTree = new QuadTree(extent, QUAD_TREE_HEIGHT);
+        for (int i = 0; i < geometries.length; i++) {
+            quadTree.insert(i, envelopes[i]);
+        }
+    }
+
+    // Index into the county geometry list of the first county containing the point, or -1
+    public int locate(double longitude, double latitude) {
+        Envelope2D query = new Envelope2D(longitude, latitude, longitude, latitude);
+        QuadTree.QuadTreeIterator iterator = quadTree.getIterator(query, 0);
+        Point point = null;
+        int found = -1;
+
+        for (int handle = iterator.next(); handle != -1; handle = iterator.next()) {
+            int county = quadTree.getElement(handle);
+            if ((found != -1 && county > found) || !envelopes[county].contains(longitude, latitude)) {
+                continue;
+            }
+            if (point == null) {
+                point = new Point(longitude, latitude);
+            }
+            if (contains.execute(geometries[county], point, spatialReference, null)) {
+                found = county;
+            }
+        }
+
+        return found;
+    }
+
+    public int size() {
+        return geometries.length;
+    }
+}
@@ -0,0 +1,395 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+// Writes a synthetic data directory in the formats OntologyMaker reads: county.ttl, stations.csv and the
+// four 1981-2010 monthly grids. Scale 1 is about the size of the real inputs, an island of ~90,000 1km
+// grid squares with 2000 station rows. Larger scales grow the island and the number of stations with
+// it. The same scale and seed always give the same files.
+//
+// The island has an irregular coast and only land squares are written, as in the real grids. The 26
+// counties are Voronoi cells with jagged borders shared by their neighbours, stations cluster around
+// towns, and rainfall and temperature vary smoothly, wetter to the west and colder to the north and
+// on high ground.
+//
+// Usage: DatasetGenerator <directory> <scale> [seed], then build with -DdataDir=<directory>
+public class DatasetGenerator {
+    // The counties of the Geohive dump, which OntologyMaker's CountyName list follows
+    private static final String[] COUNTIES = {
+            "CARLOW", "CAVAN", "CLARE", "CORK", "DONEGAL", "DUBLIN", "GALWAY", "KERRY", "KILDARE",
+            "KILKENNY", "LAOIS", "LEITRIM", "LIMERICK", "LONGFORD", "LOUTH", "MAYO", "MEATH", "MONAGHAN",
+            "OFFALY", "ROSCOMMON", "SLIGO", "TIPPERARY", "WATERFORD", "WESTMEATH", "WEXFORD", "WICKLOW"
+    };
+    private static final double WEST = -10.7;
+    private static final double EAST = -5.4;
+    private static final double SOUTH = 51.3;
+    private static final double NORTH = 55.5;
+    private static final int SEMI_AXIS_EAST_KM = 150;
+    private static final int SEMI_AXIS_NORTH_KM = 200;
+    private static final int MARGIN_KM = 20;
+    private static final int STATION_ROWS = 2000;
+    private static final int MIN_STATION_ROWS = 500;
+
+    private final double scale;
+    private final long seed;
+    private final int widthKm;
+    private final int heightKm;
+    private final double semiAxisEast;
+    private final double semiAxisNorth;
+    private final double[] coastPhases = new double[6];
+    private final Field relief;
+    private final Field wetness;
+    private final Field warmth;
+
+    public DatasetGenerator(double scale, long seed) {
+        if (scale <= 0) {
+            throw new IllegalArgumentException("Scale must be positive: " + scale);
+        }
+        this.scale = scale;
+        this.seed = seed;
+        double stretch = Math.sqrt(scale);
+        semiAxisEast = SEMI_AXIS_EAST_KM * stretch;
+        semiAxisNorth = SEMI_AXIS_NORTH_KM * stretch;
+        widthKm = (int) Math.ceil(2 * semiAxisEast) + 2 * MARGIN_KM;
+        heightKm = (int) Math.ceil(2 * semiAxisNorth) + 2 * MARGIN_KM;
+
+        Random random = new Random(seed);
+        for (int i = 0; i < coastPhases.length; i++) {
+            coastPhases[i] = random.nextDouble() * 2 * Math.PI;
+        }
+        // Features of a few tens of km, the same size whatever the scale
+        relief = new Field(random, 8, 60);
+        wetness = new Field(random, 6, 120);
+        warmth = new Field(random, 6, 150);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: DatasetGenerator <directory> <scale> [seed]");
+            System.exit(2);
+        }
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1L;
+        new DatasetGenerator(Double.parseDouble(args[1]), seed).generate(Paths.get(args[0]));
+    }
+
+    public int getStationRows() {
+        return Math.max(MIN_STATION_ROWS, (int) Math.round(STATION_ROWS * scale));
+    }
+
+    public void generate(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        writeCounties(directory.resolve("county.ttl"));
+        writeStations(directory.resolve("stations.csv"));
+        long squares = writeGrids(directory);
+        System.out.println("Generated " + squares + " grid squares and " + getStationRows() + " station rows at scale "
+                + scale + " in " + directory);
+    }
+
+    // Whether the 1km square at (east, north) km is on the island
+    boolean isLand(double eastKm, double northKm) {
+        double dx = (eastKm - widthKm / 2.0) / semiAxisEast;
+        double dy = (northKm - heightKm / 2.0) / semiAxisNorth;
+        double angle = Math.atan2(dy, dx);
+        double coast = 1;
+        for (int i = 0; i < coastPhases.length; i++) {
+            int harmonic = i + 2;
+            coast += 0.12 / harmonic * 2 * Math.sin(harmonic * angle + coastPhases[i]);
+        }
+        return dx * dx + dy * dy <= coast * coast;
+    }
+
+    private double longitude(double eastKm) {
+        return WEST + (EAST - WEST) * eastKm / widthKm;
+    }
+
+    private double latitude(double northKm) {
+        return SOUTH + (NORTH - SOUTH) * northKm / heightKm;
+    }
+
+    // Metres above sea level, rising inland and with hills from the relief field
+    private double elevation(double eastKm, double northKm) {
+        double dx = (eastKm - widthKm / 2.0) / semiAxisEast;
+        double dy = (northKm - heightKm / 2.0) / semiAxisNorth;
+        double inland = Math.max(0, 1 - Math.sqrt(dx * dx + dy * dy));
+        return Math.max(0, 80 + 150 * inland + 250 * relief.at(eastKm, northKm));
+    }
+
+    private void writeCounties(Path path) throws IOException {
+        Random random = new Random(seed + 1);
+        double[][] sites = new double[COUNTIES.length][];
+        for (int i = 0; i < sites.length; i++) {
+            sites[i] = randomLand(random);
+        }
+
+        // Enough border points for point-in-polygon work to grow with the island
+        int borderDetail = Math.max(4, (int) Math.round(24 * Math.sqrt(scale)));
+        try (Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write("@prefix rdfs: <http://www.w3.org/2000/01/rdf-schema#> .\n");
+            out.write("@prefix geo: <http://www.opengis.net/ont/geosparql#> .\n");
+            for (int i = 0; i < COUNTIES.length; i++) {
+                String name = COUNTIES[i];
+                String english = name.charAt(0) + name.substring(1).toLowerCase(Locale.ROOT);
+                String county = "<http://data.geohive.ie/resource/county/" + (i + 1) + ">";
+                String geometry = "<http://data.geohive.ie/resource/county/" + (i + 1) + "/geometry>";
+                out.write(county + " rdfs:label \"" + name + "\", \"" + english + "\"@en, \"Contae " + english
+                        + "\"@ga ; geo:hasGeometry " + geometry + " .\n");
+                out.write(geometry + " geo:asWKT \"" + countyWkt(voronoiCell(sites, i), borderDetail)
+                        + "\"^^geo:wktLiteral .\n");
+            }
+        }
+    }
+
+    // The part of the whole map closer to site i than to any other site, as a convex polygon in km
+    private List<double[]> voronoiCell(double[][] sites, int i) {
+        List<double[]> cell = new ArrayList<>();
+        cell.add(new double[]{0, 0});
+        cell.add(new double[]{widthKm, 0});
+        cell.add(new double[]{widthKm, heightKm});
+        cell.add(new double[]{0, heightKm});
+        for (int j = 0; j < sites.length; j++) {
+            if (j != i) {
+                cell = clipCloserTo(cell, sites[i], sites[j]);
+            }
+        }
+        return cell;
+    }
+
+    // Sutherland-Hodgman clip of a convex polygon to the half plane closer to a than to b
+    private static List<double[]> clipCloserTo(List<double[]> polygon, double[] a, double[] b) {
+        double nx = b[0] - a[0];
+        double ny = b[1] - a[1];
+        double limit = (b[0] * b[0] + b[1] * b[1] - a[0] * a[0] - a[1] * a[1]) / 2;
+        List<double[]> clipped = new ArrayList<>();
+        for (int k = 0; k < polygon.size(); k++) {
+            double[] from = polygon.get(k);
+            double[] to = polygon.get((k + 1) % polygon.size());
+            double fromSide = nx * from[0] + ny * from[1] - limit;
+            double toSide = nx * to[0] + ny * to[1] - limit;
+            if (fromSide <= 0) {
+                clipped.add(from);
+            }
+            if ((fromSide < 0 && toSide > 0) || (fromSide > 0 && toSide < 0)) {
+                double t = fromSide / (fromSide - toSide);
+                clipped.add(new double[]{from[0] + t * (to[0] - from[0]), from[1] + t * (to[1] - from[1])});
+            }
+        }
+        return clipped;
+    }
+
+    // Each edge is broken into detail segments that wander off the straight line. The wander only
+    // depends on the edge's end points, so the two counties sharing a border draw it the same way.
+    private String countyWkt(List<double[]> cell, int detail) {
+        StringBuilder wkt = new StringBuilder("MULTIPOLYGON (((");
+        for (int k = 0; k < cell.size(); k++) {
+            double[] from = cell.get(k);
+            double[] to = cell.get((k + 1) % cell.size());
+            wkt.append(point(longitude(from[0]), latitude(from[1]))).append(", ");
+
+            boolean forwards = compare(from, to) < 0;
+            List<double[]> border = borderPoints(forwards ? from : to, forwards ? to : from, detail);
+            for (int step = 0; step < border.size(); step++) {
+                double[] borderPoint = border.get(forwards ? step : border.size() - 1 - step);
+                wkt.append(point(longitude(borderPoint[0]), latitude(borderPoint[1]))).append(", ");
+            }
+        }
+        wkt.append(point(longitude(cell.get(0)[0]), latitude(cell.get(0)[1])));
+        return wkt.append(")))").toString();
+    }
+
+    // The points strictly between start and end. Edges along the map border stay straight.
+    private List<double[]> borderPoints(double[] start, double[] end, int detail) {
+        boolean onMapEdge = (start[0] == end[0] && (start[0] == 0 || start[0] == widthKm))
+                || (start[1] == end[1] && (start[1] == 0 || start[1] == heightKm));
+        double length = Math.hypot(end[0] - start[0], end[1] - start[1]);
+        Random wander = new Random(seed ^ edgeKey(start, end));
+        List<double[]> points = new ArrayList<>();
+        for (int step = 1; step < detail && length > 0; step++) {
+            double along = (double) step / detail;
+            double offset = onMapEdge ? 0 : (wander.nextDouble() - 0.5) * length / detail;
+            points.add(new double[]{
+                    start[0] + along * (end[0] - start[0]) - offset * (end[1] - start[1]) / length,
+                    start[1] + along * (end[1] - start[1]) + offset * (end[0] - start[0]) / length});
+        }
+        return points;
+    }
+
+    private static long edgeKey(double[] a, double[] b) {
+        double[] first = compare(a, b) < 0 ? a : b;
+        double[] second = first == a ? b : a;
+        long key = 17;
+        for (double value : new double[]{first[0], first[1], second[0], second[1]}) {
+            key = key * 31 + Math.round(value * 1e4);
+        }
+        return key;
+    }
+
+    private static int compare(double[] a, double[] b) {
+        long ax = Math.round(a[0] * 1e4);
+        long bx = Math.round(b[0] * 1e4);
+        if (ax != bx) {
+            return ax < bx ? -1 : 1;
+        }
+        return Long.compare(Math.round(a[1] * 1e4), Math.round(b[1] * 1e4));
+    }
+
+    private void writeStations(Path path) throws IOException {
+        Random random = new Random(seed + 2);
+        int towns = Math.max(5, (int) Math.round(40 * Math.sqrt(scale)));
+        double[][] townSites = new double[towns][];
+        for (int i = 0; i < towns; i++) {
+            townSites[i] = randomLand(random);
+        }
+
+        try (Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write("county,station num,name,height,east,north,lat,long,open,close\n");
+            out.write("(name),(number),(name),(m),(m),(m),(degrees),(degrees),(year),(year)\n");
+            double[] site = null;
+            for (int i = 0; i < getStationRows(); i++) {
+                // A few stations reuse the site of the one before, like a station that was renamed
+                if (site == null || random.nextInt(20) != 0) {
+                    site = random.nextInt(10) < 7 ? nearTown(random, townSites) : randomLand(random);
+                }
+                int eastM = (int) Math.round(site[0] * 1000);
+                int northM = (int) Math.round(site[1] * 1000);
+                int height = (int) Math.round(elevation(site[0], site[1]) * (0.8 + 0.4 * random.nextDouble()));
+                int open = 1850 + random.nextInt(160);
+                String close = random.nextInt(10) < 4 || open >= 2005 ? "" : Integer.toString(open + 1 + random.nextInt(2010 - open));
+                out.write(String.format(Locale.ROOT, "%s,%d,\"Station %d\",%d,%d,%d,%.4f,%.4f,%d,%s\n",
+                        COUNTIES[random.nextInt(COUNTIES.length)], 100 + i, i, height, eastM, northM,
+                        latitude(site[1]), longitude(site[0]), open, close));
+            }
+        }
+    }
+
+    private double[] randomLand(Random random) {
+        double eastKm;
+        double northKm;
+        do {
+            eastKm = random.nextDouble() * widthKm;
+            northKm = random.nextDouble() * heightKm;
+        } while (!isLand(eastKm, northKm));
+        return new double[]{eastKm, northKm};
+    }
+
+    private double[] nearTown(Random random, double[][] townSites) {
+        double[] town = townSites[random.nextInt(townSites.length)];
+        for (int attempt = 0; attempt < 20; attempt++) {
+            double eastKm = town[0] + random.nextGaussian() * 8;
+            double northKm = town[1] + random.nextGaussian() * 8;
+            if (isLand(eastKm, northKm)) {
+                return new double[]{eastKm, northKm};
+            }
+        }
+        return town;
+    }
+
+    // Returns the number of land squares written to each grid
+    private long writeGrids(Path directory) throws IOException {
+        Random noise = new Random(seed + 3);
+        long squares = 0;
+        try (BufferedWriter rainfall = grid(directory.resolve("IE_RR_8110_V1.txt"));
+             BufferedWriter max = grid(directory.resolve("IE_TX_8110_V2.txt"));
+             BufferedWriter min = grid(directory.resolve("IE_TN_8110_V2.txt"));
+             BufferedWriter mean = grid(directory.resolve("IE_TMEAN_8110_V2.txt"))) {
+            StringBuilder rainfallRow = new StringBuilder(128);
+            StringBuilder maxRow = new StringBuilder(128);
+            StringBuilder minRow = new StringBuilder(128);
+            StringBuilder meanRow = new StringBuilder(128);
+            for (int east = 0; east < widthKm; east++) {
+                for (int north = 0; north < heightKm; north++) {
+                    if (!isLand(east + 0.5, north + 0.5)) {
+                        continue;
+                    }
+                    squares++;
+                    double height = elevation(east, north);
+                    double westness = 1 - (double) east / widthKm;
+                    double northness = (double) north / heightKm;
+                    double annualRainfall = 750 + 1000 * westness + 1.2 * height + 250 * wetness.at(east, north);
+                    double annualMean = 10.8 - 1.8 * northness - 0.0065 * height + 0.4 * warmth.at(east, north);
+                    double amplitude = 4.6 + 0.8 * (1 - westness);
+
+                    String key = east * 1000 + "," + north * 1000;
+                    rainfallRow.setLength(0);
+                    maxRow.setLength(0);
+                    minRow.setLength(0);
+                    meanRow.setLength(0);
+                    rainfallRow.append(key);
+                    maxRow.append(key);
+                    minRow.append(key);
+                    meanRow.append(key);
+                    for (int month = 0; month < 12; month++) {
+                        double season = Math.cos(2 * Math.PI * (month + 0.5) / 12);
+                        double monthRainfall = annualRainfall / 12 * (1 + 0.3 * season) + noise.nextGaussian() * 4;
+                        double monthMean = annualMean - amplitude * season + noise.nextGaussian() * 0.1;
+                        double range = 3.2 + 1.4 * (1 - season) / 2;
+                        rainfallRow.append(',').append(Math.max(0, Math.round(monthRainfall)));
+                        appendTenths(meanRow.append(','), monthMean);
+                        appendTenths(maxRow.append(','), monthMean + range);
+                        appendTenths(minRow.append(','), monthMean - range);
+                    }
+                    rainfall.append(rainfallRow).append('\n');
+                    max.append(maxRow).append('\n');
+                    min.append(minRow).append('\n');
+                    mean.append(meanRow).append('\n');
+                }
+            }
+        }
+        return squares;
+    }
+
+    private static BufferedWriter grid(Path path) throws IOException {
+        BufferedWriter out = new BufferedWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8), 1 << 16);
+        out.write("east,north,m1,m2,m3,m4,m5,m6,m7,m8,m9,m10,m11,m12\n");
+        return out;
+    }
+
+    // value to one decimal place, without the cost of String.format on every cell
+    private static void appendTenths(StringBuilder out, double value) {
+        long tenths = Math.round(value * 10);
+        if (tenths < 0) {
+            out.append('-');
+            tenths = -tenths;
+        }
+        out.append(tenths / 10).append('.').append(tenths % 10);
+    }
+
+    private static String point(double longitude, double latitude) {
+        return String.format(Locale.ROOT, "%.5f %.5f", longitude, latitude);
+    }
+
+    // Smooth noise in about [-1, 1] from a few plane waves, with features around wavelengthKm across
+    private static class Field {
+        private final double[] kx;
+        private final double[] ky;
+        private final double[] phase;
+
+        Field(Random random, int waves, double wavelengthKm) {
+            kx = new double[waves];
+            ky = new double[waves];
+            phase = new double[waves];
+            for (int i = 0; i < waves; i++) {
+                double angle = random.nextDouble() * 2 * Math.PI;
+                double frequency = 2 * Math.PI / (wavelengthKm * (0.5 + random.nextDouble()));
+                kx[i] = Math.cos(angle) * frequency;
+                ky[i] = Math.sin(angle) * frequency;
+                phase[i] = random.nextDouble() * 2 * Math.PI;
+            }
+        }
+
+        double at(double eastKm, double northKm) {
+            double sum = 0;
+            for (int i = 0; i < kx.length; i++) {
+                sum += Math.sin(kx[i] * eastKm + ky[i] * northKm + phase[i]);
+            }
+            return sum / Math.sqrt(kx.length);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+import org.apache.jena.riot.system.StreamRDF;
+
+import java.io.IOException;
+
+// A weather dataset that only reads the grid squares fixed by the station loader, so it can be
+// turned into triples independently of, and concurrently with, the other datasets.
+public interface DatasetLoader {
+    String getName();
+
+    // Returns the number of source rows read
+    long load(StreamRDF output) throws IOException;
+}
@@ -0,0 +1,140 @@
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.lang.StreamRDFCounting;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.riot.system.StreamRDFWriter;
+import org.apache.jena.sparql.graph.GraphFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+// Runs the DatasetLoaders, either one after another or on a thread pool. Their output always ends
+// up in loader order, so both ways give the same triples.
+public class DatasetPipeline {
+    private final List<DatasetLoader> loaders;
+    private final BuildOptions options;
+    private final BuildReport report;
+
+    public DatasetPipeline(List<DatasetLoader> loaders, BuildOptions options, BuildReport report) {
+        this.loaders = loaders;
+        this.options = options;
+        this.report = report;
+    }
+
+    // Adds every dataset to the target graph. In parallel each loader fills its own graph and the
+    // graphs are merged at the end.
+    public void loadInto(final Graph target) {
+        if (!runsInParallel()) {
+            for (DatasetLoader loader : loaders) {
+                load(loader, StreamRDFLib.graph(target));
+            }
+            return;
+        }
+
+        List<Graph> graphs = runAll(new Stage<Graph>() {
+            public Graph run(DatasetLoader loader) {
+                Graph graph = GraphFactory.createGraphMem();
+                load(loader, StreamRDFLib.graph(graph));
+                return graph;
+            }
+        });
+        BuildReport.Stage merge = report.start("merge");
+        long merged = 0;
+        for (Graph graph : graphs) {
+            merged += graph.size();
+            GraphUtil.addInto(target, graph);
+            graph.close();
+        }
+        merge.triplesOut(merged).end();
+    }
+
+    // Writes every dataset to out as N-Triples without keeping any of it in memory. In parallel each
+    // loader writes to its own temporary file, and the files are appended to out in loader order.
+    public void writeTo(final OutputStream out) throws IOException {
+        if (!runsInParallel()) {
+            for (DatasetLoader loader : loaders) {
+                load(loader, StreamRDFWriter.getWriterStream(out, RDFFormat.NTRIPLES));
+            }
+            return;
+        }
+
+        List<Path> parts = runAll(new Stage<Path>() {
+            public Path run(DatasetLoader loader) throws IOException {
+                Path part = Files.createTempFile("ontology-" + loader.getName().toLowerCase(), ".nt");
+                try (OutputStream partOut = new BufferedOutputStream(Files.newOutputStream(part), 1 << 16)) {
+                    load(loader, StreamRDFWriter.getWriterStream(partOut, RDFFormat.NTRIPLES));
+                }
+                return part;
+            }
+        });
+        BuildReport.Stage append = report.start("append");
+        try {
+            long bytes = 0;
+            for (Path part : parts) {
+                bytes += Files.copy(part, out);
+            }
+            append.put("bytes", bytes);
+        } finally {
+            append.end();
+            for (Path part : parts) {
+                Files.deleteIfExists(part);
+            }
+        }
+    }
+
+    private boolean runsInParallel() {
+        return options.isParallel() && loaders.size() > 1;
+    }
+
+    private void load(DatasetLoader loader, StreamRDF output) {
+        BuildReport.Stage stage = report.start(loader.getName().toLowerCase());
+        StreamRDFCounting counted = StreamRDFLib.count(output);
+        counted.start();
+        try {
+            stage.rowsIn(loader.load(counted));
+        } catch (IOException e) {
+            // A dataset cut short must not be written out as if it were whole
+            throw new RuntimeException("Failed to load the " + loader.getName() + " dataset", e);
+        }
+        counted.finish();
+        stage.triplesOut(counted.countTriples()).end();
+        System.out.println("Finished Parsing " + loader.getName() + " Dataset");
+    }
+
+    private interface Stage<T> {
+        T run(DatasetLoader loader) throws IOException;
+    }
+
+    private <T> List<T> runAll(final Stage<T> stage) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(options.getThreads(), loaders.size())));
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (final DatasetLoader loader : loaders) {
+                futures.add(executor.submit(new Callable<T>() {
+                    public T call() throws IOException {
+                        return stage.run(loader);
+                    }
+                }));
+            }
+
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while loading datasets", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to load datasets", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Grid squares keyed on their (easting, northing) pair. Keys are packed into a long and kept in
+// open addressing tables, so a lookup never touches the model. Squares are also chained into
+// 1000m cells, which lets findAdjacent() look at the 3x3 neighbouring cells instead of every square.
+public class GridSquareIndex<T> {
+    private static final int CELL_SIZE = 1000;
+
+    private final ArrayList<T> squares = new ArrayList<>();
+    private int[] eastings = new int[16];
+    private int[] northings = new int[16];
+    private int[] nextInCell = new int[16];
+
+    private final LongIntMap squareIds = new LongIntMap();
+    private final LongIntMap cellHeads = new LongIntMap();
+
+    public T get(int easting, int northing) {
+        int id = squareIds.get(key(easting, northing));
+        return id < 0 ? null : squares.get(id);
+    }
+
+    public boolean contains(int easting, int northing) {
+        return squareIds.get(key(easting, northing)) >= 0;
+    }
+
+    public void put(int easting, int northing, T square) {
+        long key = key(easting, northing);
+        int existing = squareIds.get(key);
+        if (existing >= 0) {
+            squares.set(existing, square);
+            return;
+        }
+
+        int id = squares.size();
+        squares.add(square);
+        if (id == eastings.length) {
+            int capacity = id * 2;
+            eastings = Arrays.copyOf(eastings, capacity);
+            northings = Arrays.copyOf(northings, capacity);
+            nextInCell = Arrays.copyOf(nextInCell, capacity);
+        }
+        eastings[id] = easting;
+        northings[id] = northing;
+        squareIds.put(key, id);
+
+        // Append to the end of the cell chain so chains stay in insertion order
+        long cell = key(cell(easting), cell(northing));
+        nextInCell[id] = -1;
+        int head = cellHeads.get(cell);
+        if (head < 0) {
+            cellHeads.put(cell, id);
+        } else {
+            while (nextInCell[head] >= 0) {
+                head = nextInCell[head];
+            }
+            nextInCell[head] = id;
+        }
+    }
+
+    // Returns the earliest registered square, other than (easting, northing) itself, that lies
+    // within 1000m east/west and less than 1000m north/south of the given point
+    public T findAdjacent(int easting, int northing) {
+        int cellE = cell(easting);
+        int cellN = cell(northing);
+        int best = -1;
+
+        for (int e = cellE - 1; e <= cellE + 1; e++) {
+            for (int n = cellN - 1; n <= cellN + 1; n++) {
+                int id = cellHeads.get(key(e, n));
+                while (id >= 0 && (best < 0 || id < best)) {
+                    int dEasting = Math.abs(eastings[id] - easting);
+                    int dNorthing = Math.abs(northings[id] - northing);
+                    if ((dEasting != 0 || dNorthing != 0) && dEasting <= CELL_SIZE && dNorthing < CELL_SIZE) {
+                        best = id;
+                        break;
+                    }
+                    id = nextInCell[id];
+                }
+            }
+        }
+
+        return best < 0 ? null : squares.get(best);
+    }
+
+    public int size() {
+        return squares.size();
+    }
+
+    // Squares are numbered from 0 in the order they were first put
+    public T getSquare(int id) {
+        return squares.get(id);
+    }
+
+    public int getEasting(int id) {
+        return eastings[id];
+    }
+
+    public int getNorthing(int id) {
+        return northings[id];
+    }
+
+    private static int cell(int coordinate) {
+        return (int) Math.floor(coordinate / (double) CELL_SIZE);
+    }
+
+    private static long key(int easting, int northing) {
+        return ((long) easting << 32) | (northing & 0xffffffffL);
+    }
+
+    // Minimal long -> int open addressing map, -1 meaning absent
+    private static class LongIntMap {
+        private long[] keys = new long[32];
+        private int[] values = new int[32];
+        private boolean[] used = new boolean[32];
+        private int size;
+
+        int get(long key) {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (used[slot]) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        void put(long key, int value) {
+            if ((size + 1) * 2 > keys.length) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (used[slot]) {
+                if (keys[slot] == key) {
+                    values[slot] = value;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            used[slot] = true;
+            keys[slot] = key;
+            values[slot] = value;
+            size++;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            boolean[] oldUsed = used;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            used = new boolean[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            key ^= key >>> 33;
+            key *= 0xff51afd7ed558ccdL;
+            key ^= key >>> 33;
+            return (int) key;
+        }
+    }
+}
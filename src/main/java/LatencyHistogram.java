@@ -0,0 +1,61 @@
+import org.apache.jena.atlas.json.JsonNumber;
+import org.apache.jena.atlas.json.JsonObject;
+
+// Latency histogram with power of two microsecond buckets, from 1us up to about 2.5 hours. Percentiles
+// are reported as the upper bound of the bucket they fall in, so they are accurate to within 2x.
+public class LatencyHistogram {
+    private static final int BUCKETS = 34;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long totalNanos;
+    private long maxNanos;
+
+    public synchronized void record(long nanos) {
+        long micros = Math.max(nanos / 1000, 1);
+        int bucket = Math.min(63 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+        counts[bucket]++;
+        count++;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized double getMeanMillis() {
+        return count == 0 ? 0 : totalNanos / (count * 1e6);
+    }
+
+    public synchronized double getMaxMillis() {
+        return maxNanos / 1e6;
+    }
+
+    // Upper bound in milliseconds of the bucket holding the given fraction of samples, e.g. 0.95
+    public synchronized double getPercentileMillis(double fraction) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(fraction * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min((2L << i) / 1e3, getMaxMillis());
+            }
+        }
+        return getMaxMillis();
+    }
+
+    public synchronized JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.put("count", count);
+        json.put("meanMillis", JsonNumber.value(getMeanMillis()));
+        json.put("p50Millis", JsonNumber.value(getPercentileMillis(0.50)));
+        json.put("p95Millis", JsonNumber.value(getPercentileMillis(0.95)));
+        json.put("p99Millis", JsonNumber.value(getPercentileMillis(0.99)));
+        json.put("maxMillis", JsonNumber.value(getMaxMillis()));
+        return json;
+    }
+}
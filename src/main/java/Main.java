@@ -1,11 +1,313 @@
+import org.apache.jena.query.QueryException;
+import org.apache.jena.riot.Lang;
+
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+// With no arguments opens the window. The subcommands run headless and never load AWT, and each loads
+// only what it needs: build makes the ontology without loading it for querying, and the others query
+// what the last build left on disk without building anything, opening its TDB2 store when it wrote one.
 public class Main {
+    private static final int DEFAULT_PORT = 3030;
+    private static final int DEFAULT_TIMEOUT_SECONDS = Integer.getInteger("queryTimeout", 60);
+    private static final int DEFAULT_BENCH_ROUNDS = 10;
+    private static final String USAGE = String.format("Usage: Main [command]%n"
+            + "  (none)                             open the window%n"
+            + "  build [options]                    download the sources and build the ontology%n"
+            + "      --parallel --threads <n> --stream --tdb --incremental --refresh --grid --materialise <reasoning>%n"
+            + "  query <file or SPARQL> [format]    answer one query as text, json, csv, tsv or xml%n"
+            + "  serve [port]                       answer SPARQL over HTTP on localhost, port %d by default,%n"
+            + "                                     POST to /reload to switch to a new build%n"
+            + "  batch <output directory> [files]   answer the query files, or every question, into a directory%n"
+            + "  bench [rounds]                     time every question over %d rounds by default%n"
+            + "  query, serve, batch and bench take --reasoning none, rdfs or owl-micro, by default none over a%n"
+            + "  TDB2 store, which holds what its build materialised, and rdfs otherwise",
+            DEFAULT_PORT, DEFAULT_BENCH_ROUNDS);
+
     public static void main(String[] args) throws IOException {
-        //System.out.println("Creating Ontology");
-        //OntologyMaker.createOntology();
-        //System.out.println("Ontology Created");
+        if (args.length == 0) {
+            openWindow();
+            return;
+        }
+
+        System.setProperty("java.awt.headless", "true");
+        try {
+            ReasoningMode reasoning = null;
+            if (!args[0].equals("build")) {
+                List<String> arguments = new ArrayList<>(Arrays.asList(args));
+                int option = arguments.indexOf("--reasoning");
+                if (option >= 0) {
+                    reasoning = ReasoningMode.fromName(value(args, option + 1));
+                    arguments.subList(option, option + 2).clear();
+                    args = arguments.toArray(new String[0]);
+                }
+            }
+            reasoning = reasoning != null ? reasoning : defaultReasoning();
+
+            switch (args[0]) {
+                case "build":
+                    OntologyMaker.createOntology(buildOptions(args));
+                    break;
+                case "query":
+                    if (args.length < 2) {
+                        throw new IllegalArgumentException("No query given");
+                    }
+                    if (!query(args[1], args.length > 2 ? args[2] : "text", reasoning)) {
+                        System.exit(1);
+                    }
+                    break;
+                case "serve":
+                    serve(args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT, reasoning);
+                    break;
+                case "batch":
+                    if (args.length < 2) {
+                        throw new IllegalArgumentException("No output directory given");
+                    }
+                    List<Path> queries = new ArrayList<>();
+                    for (int i = 2; i < args.length; i++) {
+                        queries.add(Paths.get(args[i]));
+                    }
+                    if (!batch(Paths.get(args[1]), queries, reasoning)) {
+                        System.exit(1);
+                    }
+                    break;
+                case "bench":
+                    bench(args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_BENCH_ROUNDS, reasoning);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown command " + args[0]);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+    }
+
+    // Kept apart so that only the window loads Swing
+    private static void openWindow() throws IOException {
         Window window = new Window();
         window.launchWindow();
     }
+
+    private static BuildOptions buildOptions(String[] args) {
+        BuildOptions options = new BuildOptions();
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--parallel":
+                    options.setParallel(true);
+                    break;
+                case "--threads":
+                    options.setThreads(Integer.parseInt(value(args, ++i)));
+                    break;
+                case "--stream":
+                    options.setStreamingOutput(true);
+                    break;
+                case "--tdb":
+                    options.setTdbStore(true);
+                    break;
+                case "--incremental":
+                    options.setIncremental(true);
+                    break;
+                case "--refresh":
+                    options.setRefreshSources(true);
+                    break;
+                case "--grid":
+                    options.setGridFile(true);
+                    break;
+                case "--materialise":
+                    options.setMaterialisedReasoning(ReasoningMode.fromName(value(args, ++i)));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown build option " + args[i]);
+            }
+        }
+        return options;
+    }
+
+    private static String value(String[] args, int index) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException(args[index - 1] + " needs a value");
+        }
+        return args[index];
+    }
+
+    // -Dreasoning still chooses when given. Otherwise a TDB2 store is queried in place as its build
+    // left it, with whatever inferences were materialised into it, rather than read into memory for
+    // a reasoner.
+    private static ReasoningMode defaultReasoning() {
+        String property = System.getProperty("reasoning");
+        if (property != null) {
+            return ReasoningMode.fromName(property);
+        }
+        return OntologyMaker.hasStore() ? ReasoningMode.NONE : ReasoningMode.RDFS;
+    }
+
+    // Querying never builds the ontology, so a missing one is reported rather than made
+    private static QueryHandler openHandler(ReasoningMode reasoning) throws IOException {
+        checkOntology();
+        return new QueryHandler(reasoning);
+    }
+
+    private static void checkOntology() {
+        if (!OntologyMaker.hasStore() && !new File(OntologyMaker.ONTOLOGY_PATH).isFile()) {
+            System.err.println("There is no ontology in " + OntologyMaker.DATA_DIR + ", run build first");
+            System.exit(2);
+        }
+    }
+
+    // Returns whether the query was answered. text is the window's table, the other formats are
+    // written as the results are read.
+    private static boolean query(String fileOrSparql, String format, ReasoningMode reasoning) throws IOException {
+        String sparql = fileOrSparql;
+        if (new File(fileOrSparql).isFile()) {
+            sparql = new String(Files.readAllBytes(Paths.get(fileOrSparql)), StandardCharsets.UTF_8);
+        }
+        final Lang lang = format.equals("text") ? null : SparqlServer.langFor(format.toLowerCase());
+        if (!format.equals("text") && lang == null) {
+            throw new IllegalArgumentException("Unknown format " + format);
+        }
+
+        // Loading reports its progress on standard output, which is kept for the results
+        PrintStream results = System.out;
+        System.setOut(System.err);
+        QueryHandler handler;
+        try {
+            handler = openHandler(reasoning);
+        } finally {
+            System.setOut(results);
+        }
+        QueryTask task = new QueryTask(DEFAULT_TIMEOUT_SECONDS * 1000L);
+        try {
+            if (lang == null) {
+                System.out.print(handler.execute(sparql, task));
+            } else {
+                handler.write(sparql, task, lang, new QueryHandler.ResultsOutput() {
+                    public OutputStream open() {
+                        return System.out;
+                    }
+                });
+            }
+            System.out.flush();
+            return true;
+        } catch (QueryException e) {
+            System.err.println(e.getMessage());
+            return false;
+        }
+    }
+
+    private static void serve(int port, ReasoningMode reasoning) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        final SparqlServer server = new SparqlServer(openHandler(reasoning), new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                threads, threads * 8, DEFAULT_TIMEOUT_SECONDS * 1000L);
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            public void run() {
+                server.stop(1);
+            }
+        });
+        server.start();
+    }
+
+    // Returns whether every query was answered
+    private static boolean batch(Path output, List<Path> queryFiles, ReasoningMode reasoning) throws IOException {
+        int threads = Integer.getInteger("batchThreads", Runtime.getRuntime().availableProcessors());
+        QueryHandler handler = openHandler(reasoning);
+        QueryBatch batch = new QueryBatch(handler, threads, DEFAULT_TIMEOUT_SECONDS * 1000L);
+        Map<String, String> queries = queryFiles.isEmpty() ? null : QueryBatch.readQueries(queryFiles);
+        List<String> names = new ArrayList<>();
+        if (queries != null) {
+            names.addAll(queries.keySet());
+        } else {
+            for (int i = 0; i < handler.getQuestionCount(); i++) {
+                names.add(handler.getQuestionName(i));
+            }
+        }
+        checkOutputNames(names);
+        Files.createDirectories(output);
+
+        long start = System.nanoTime();
+        List<QueryBatch.Result> results;
+        try {
+            results = queries == null ? batch.runQuestions() : batch.run(queries);
+        } catch (InterruptedException e) {
+            throw new IOException("Interrupted", e);
+        }
+        long wallNanos = System.nanoTime() - start;
+
+        int failed = 0;
+        for (QueryBatch.Result result : results) {
+            if (result.isSucceeded()) {
+                Files.write(output.resolve(outputName(result.getName())), result.getText().getBytes(StandardCharsets.UTF_8));
+                System.out.printf("%-40s %10.1f ms%n", result.getName(), result.getWallNanos() / 1e6);
+            } else {
+                failed++;
+                System.out.printf("%-40s %10.1f ms  %s%n", result.getName(), result.getWallNanos() / 1e6,
+                        result.getError().split("\n")[0]);
+            }
+        }
+        Files.write(output.resolve("timings.json"),
+                batch.toJson(results, wallNanos).toString().getBytes(StandardCharsets.UTF_8));
+        System.out.printf("%d queries, %d failed, in %.1f ms%n", results.size(), failed, wallNanos / 1e6);
+        return failed == 0;
+    }
+
+    // q.rq is answered into q.txt
+    private static String outputName(String queryName) {
+        return queryName.replaceFirst("\\.[^.]*$", "") + ".txt";
+    }
+
+    // Queries such as q.rq and q.sparql would overwrite each other's answer, so they are refused up front
+    private static void checkOutputNames(List<String> queryNames) {
+        Map<String, String> outputs = new HashMap<>();
+        for (String name : queryNames) {
+            String clash = outputs.put(outputName(name), name);
+            if (clash != null) {
+                throw new IllegalArgumentException(clash + " and " + name + " would both be answered into " + outputName(name));
+            }
+        }
+    }
+
+    // Runs every question once to warm up, then the given rounds one at a time, and prints how long
+    // each took from the time the data was loaded
+    private static void bench(int rounds, ReasoningMode reasoning) throws IOException {
+        checkOntology();
+        long loadStart = System.nanoTime();
+        // Cached answers would only time the cache, unless -DresultCacheSize asks for them
+        QueryHandler handler = new QueryHandler(reasoning, Integer.getInteger("resultCacheSize", 0));
+        System.out.printf("Loaded in %.1f ms%n", (System.nanoTime() - loadStart) / 1e6);
+
+        int questions = handler.getQuestionCount();
+        LatencyHistogram[] latencies = new LatencyHistogram[questions];
+        for (int i = 0; i < questions; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+        for (int round = 0; round <= rounds; round++) {
+            for (int i = 0; i < questions; i++) {
+                long start = System.nanoTime();
+                handler.execute(i, new QueryTask(DEFAULT_TIMEOUT_SECONDS * 1000L));
+                if (round > 0) {
+                    latencies[i].record(System.nanoTime() - start);
+                }
+            }
+        }
+
+        System.out.printf("%-30s %10s %10s %10s %10s%n", "question", "mean ms", "p50 ms", "p95 ms", "max ms");
+        for (int i = 0; i < questions; i++) {
+            System.out.printf("%-30s %10.1f %10.1f %10.1f %10.1f%n", handler.getQuestionName(i), latencies[i].getMeanMillis(),
+                    latencies[i].getPercentileMillis(0.5), latencies[i].getPercentileMillis(0.95), latencies[i].getMaxMillis());
+        }
+    }
 }
@@ -0,0 +1,115 @@
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+// Reads a Met Eireann monthly grid file (easting, northing, January ... December) one row at a time,
+// so only the current row is ever held in memory.
+public class MonthlyGridReader implements Closeable {
+    // Separates an archive from the entry inside it, as in rainfall.zip!/IE_RR_8110_V1.txt
+    public static final String ARCHIVE_SEPARATOR = "!/";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final String source;
+    private final Closeable archive;
+    private final CSVParser parser;
+    private final Iterator<CSVRecord> rows;
+    private CSVRecord current;
+
+    // path is either a grid file or an entry of a zip archive, which is then inflated as it is read
+    // instead of being extracted to disk first. Both are read as ISO-8859-1, so a grid parses the same
+    // wherever it came from.
+    public MonthlyGridReader(String path) throws IOException {
+        this(path, openArchive(path));
+    }
+
+    public MonthlyGridReader(String source, Reader reader) throws IOException {
+        this(source, reader, null);
+    }
+
+    private MonthlyGridReader(String path, ZipFile archive) throws IOException {
+        this(path, archive == null ? new InputStreamReader(new FileInputStream(path), StandardCharsets.ISO_8859_1)
+                : openEntry(archive, path), archive);
+    }
+
+    private MonthlyGridReader(String source, Reader reader, Closeable archive) throws IOException {
+        this.source = source;
+        this.archive = archive;
+        parser = CSVFormat.DEFAULT.parse(new BufferedReader(reader, BUFFER_SIZE));
+        rows = parser.iterator();
+
+        // Skip the header row
+        if (rows.hasNext()) {
+            rows.next();
+        }
+    }
+
+    public boolean next() throws IOException {
+        try {
+            if (!rows.hasNext()) {
+                current = null;
+                return false;
+            }
+            current = rows.next();
+            return true;
+        } catch (IllegalStateException e) {
+            // CSVParser's iterator wraps read failures
+            throw new IOException("Failed to read " + source, e.getCause() != null ? e.getCause() : e);
+        }
+    }
+
+    public int getEasting() {
+        return Integer.parseInt(current.get(0));
+    }
+
+    public int getNorthing() {
+        return Integer.parseInt(current.get(1));
+    }
+
+    // month is 0 for January through 11 for December
+    public int getInt(int month) {
+        return Integer.parseInt(current.get(month + 2));
+    }
+
+    public float getFloat(int month) {
+        return Float.parseFloat(current.get(month + 2));
+    }
+
+    public long getRowNumber() {
+        return parser.getRecordNumber() - 1;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public void close() throws IOException {
+        try {
+            parser.close();
+        } finally {
+            if (archive != null) {
+                archive.close();
+            }
+        }
+    }
+
+    private static ZipFile openArchive(String path) throws IOException {
+        int separator = path.indexOf(ARCHIVE_SEPARATOR);
+        return separator < 0 ? null : new ZipFile(path.substring(0, separator));
+    }
+
+    private static Reader openEntry(ZipFile archive, String path) throws IOException {
+        String name = path.substring(path.indexOf(ARCHIVE_SEPARATOR) + ARCHIVE_SEPARATOR.length());
+        ZipEntry entry = archive.getEntry(name);
+        if (entry == null) {
+            archive.close();
+            throw new FileNotFoundException(path);
+        }
+        return new InputStreamReader(new BufferedInputStream(archive.getInputStream(entry), BUFFER_SIZE), StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,515 @@
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.graph.compose.DisjointUnion;
+import org.apache.jena.graph.impl.GraphBase;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamOps;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.riot.system.StreamRDFWrapper;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.util.iterator.NullIterator;
+import org.apache.jena.util.iterator.WrappedIterator;
+
+import java.util.*;
+
+// The RainfallRecords and TemperatureRecords of the ontology, held in primitive columns indexed by
+// record number instead of as Triple objects. A record costs a few bytes per property, and find()
+// makes its rdf:type, value, happenedAt and monthHappened triples as they are asked for. Anything
+// about a record the columns cannot hold exactly, such as a second value for the same property or
+// a literal not written the way the build writes it, is left to the ordinary graph beside this one.
+// Given the ClimateGridFile the records were made from, values are read from the mapped file rather
+// than kept in columns on the heap.
+public class MonthlyRecordGraph extends GraphBase {
+    private static final int TYPE = 1;
+    private static final int MONTH = 2;
+    private static final int LOCATION = 4;
+    private static final int FIRST_VALUE = 8;
+
+    private final Kind rainfall = new Kind("RainRecord", OntologyVocabulary.RAINFALL_RECORD, OntologyVocabulary.RAINFALL);
+    private final Kind temperature = new Kind("TemperatureRecord", OntologyVocabulary.TEMPERATURE_RECORD,
+            OntologyVocabulary.TEMPERATURE_MAX, OntologyVocabulary.TEMPERATURE_MEAN, OntologyVocabulary.TEMPERATURE_MIN);
+    private final Kind[] kinds = {rainfall, temperature};
+
+    private final List<Node> squares = new ArrayList<>();
+    private final Map<Node, Integer> squareIds = new HashMap<>();
+    private int size;
+    private ClimateGridFile grids;
+    // The grid file row of every square, or -1
+    private int[] gridRows;
+
+    // Reads an ontology file into a model whose graph is this graph for the records and a plain
+    // in-memory graph for everything else. grids may be null.
+    public static Model loadModel(String path, ClimateGridFile grids) {
+        Graph rest = GraphFactory.createGraphMem();
+        MonthlyRecordGraph records = new MonthlyRecordGraph();
+        RDFDataMgr.parse(records.splitter(StreamRDFLib.graph(rest)), path);
+        return toModel(records, rest, grids);
+    }
+
+    // The same from the triples of source, such as a TDB2 store read in a transaction
+    public static Model loadModel(Graph source, ClimateGridFile grids) {
+        Graph rest = GraphFactory.createGraphMem();
+        MonthlyRecordGraph records = new MonthlyRecordGraph();
+        StreamRDF splitter = records.splitter(StreamRDFLib.graph(rest));
+        splitter.start();
+        StreamOps.sendGraphToStream(source, splitter);
+        splitter.finish();
+        return toModel(records, rest, grids);
+    }
+
+    private static Model toModel(MonthlyRecordGraph records, Graph rest, ClimateGridFile grids) {
+        int fromGrids = grids == null ? 0 : records.useGrids(grids, rest);
+        System.out.println("Holding " + records.getRecordCount() + " weather records in columns, reading "
+                + fromGrids + " of their values from the grid file");
+
+        Model model = ModelFactory.createModelForGraph(new DisjointUnion(rest, records));
+        model.setNsPrefixes(rest.getPrefixMapping());
+        return model;
+    }
+
+    // Keeps the record triples it can hold and passes every other triple on to rest
+    public StreamRDF splitter(StreamRDF rest) {
+        return new StreamRDFWrapper(rest) {
+            public void triple(Triple triple) {
+                if (!load(triple)) {
+                    other.triple(triple);
+                }
+            }
+        };
+    }
+
+    public int getRecordCount() {
+        return rainfall.count + temperature.count;
+    }
+
+    @Override
+    protected int graphBaseSize() {
+        return size;
+    }
+
+    @Override
+    protected ExtendedIterator<Triple> graphBaseFind(Triple pattern) {
+        ExtendedIterator<Triple> found = NullIterator.instance();
+        for (Kind kind : kinds) {
+            found = found.andThen(kind.find(pattern.getSubject(), pattern.getPredicate(), pattern.getObject()));
+        }
+        return found;
+    }
+
+    // Returns false when the triple is not a record triple the columns can hold as it is
+    boolean load(Triple triple) {
+        Node subject = triple.getSubject();
+        for (Kind kind : kinds) {
+            int record = kind.recordNumber(subject);
+            if (record >= 0) {
+                int added = kind.load(record, triple.getPredicate(), triple.getObject());
+                if (added < 0) {
+                    return false;
+                }
+                size += added;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Reads from the grids every value column that holds exactly what the grids do for its records'
+    // squares and months, and lets those columns go. Squares are placed by their easting and
+    // northing in rest. Returns the number of columns let go.
+    int useGrids(ClimateGridFile grids, Graph rest) {
+        int[] rows = new int[squares.size()];
+        for (int square = 0; square < rows.length; square++) {
+            Integer easting = intValue(rest, squares.get(square), OntologyVocabulary.EASTING);
+            Integer northing = intValue(rest, squares.get(square), OntologyVocabulary.NORTHING);
+            rows[square] = easting == null || northing == null ? -1 : grids.find(easting, northing);
+        }
+        this.grids = grids;
+        gridRows = rows;
+
+        int released = 0;
+        for (Kind kind : kinds) {
+            released += kind.useGrids();
+        }
+        return released;
+    }
+
+    // The one integer value of subject's property, or null
+    private static Integer intValue(Graph graph, Node subject, Node property) {
+        List<Triple> found = graph.find(subject, property, Node.ANY).toList();
+        if (found.size() != 1 || !found.get(0).getObject().isLiteral()
+                || !(found.get(0).getObject().getLiteralValue() instanceof Number)) {
+            return null;
+        }
+        long value = ((Number) found.get(0).getObject().getLiteralValue()).longValue();
+        return value == (int) value ? (int) value : null;
+    }
+
+    private int squareId(Node square) {
+        Integer id = squareIds.get(square);
+        if (id == null) {
+            id = squares.size();
+            squares.add(square);
+            squareIds.put(square, id);
+        }
+        return id;
+    }
+
+    private static boolean matches(Node pattern, Node node) {
+        return !pattern.isConcrete() || pattern.equals(node) || (pattern.isLiteral() && pattern.sameValueAs(node));
+    }
+
+    private static int monthIndex(Node month) {
+        for (int i = 0; i < OntologyVocabulary.MONTHS.length; i++) {
+            if (OntologyVocabulary.MONTHS[i].equals(month)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // One kind of record, numbered from 1 as in base:RainRecord1. Row r of every column belongs to
+    // record r + 1, and present says which of the record's triples were loaded.
+    private class Kind {
+        private final String prefix;
+        private final Node type;
+        private final Node[] properties;
+        private final boolean[] isFloat;
+        private int capacity = 1024;
+        private int count;
+        private int rows;
+        private byte[] present = new byte[capacity];
+        private byte[] months = new byte[capacity];
+        private int[] locations = new int[capacity];
+        private final int[][] intValues;
+        private final float[][] floatValues;
+        // Set once loading is done for the values read from the grids instead
+        private final boolean[] fromGrids;
+        private volatile int[] locationStarts;
+        private int[] recordsByLocation;
+
+        Kind(String localName, Node type, Node... properties) {
+            this.prefix = OntologyVocabulary.NAMESPACE + localName;
+            this.type = type;
+            this.properties = properties;
+            isFloat = new boolean[properties.length];
+            fromGrids = new boolean[properties.length];
+            for (int i = 0; i < properties.length; i++) {
+                isFloat[i] = properties[i] != OntologyVocabulary.RAINFALL;
+            }
+            intValues = new int[properties.length][];
+            floatValues = new float[properties.length][];
+            for (int i = 0; i < properties.length; i++) {
+                if (isFloat[i]) {
+                    floatValues[i] = new float[capacity];
+                } else {
+                    intValues[i] = new int[capacity];
+                }
+            }
+        }
+
+        // The row of a subject of this kind, or -1
+        int recordNumber(Node subject) {
+            if (!subject.isURI() || !subject.getURI().startsWith(prefix)) {
+                return -1;
+            }
+            String number = subject.getURI().substring(prefix.length());
+            if (number.isEmpty() || number.length() > 9 || number.charAt(0) == '0') {
+                return -1;
+            }
+            for (int i = 0; i < number.length(); i++) {
+                if (number.charAt(i) < '0' || number.charAt(i) > '9') {
+                    return -1;
+                }
+            }
+            return Integer.parseInt(number) - 1;
+        }
+
+        // Returns the number of new triples held, or -1 if the triple has to go elsewhere. The triple is
+        // checked before the columns grow, so one that is turned away never allocates for its row.
+        int load(int row, Node predicate, Node object) {
+            int loaded = row < rows ? present[row] : 0;
+            int bit;
+            int month = -1;
+            int property = -1;
+            Number value = null;
+            if (predicate.equals(OntologyVocabulary.TYPE)) {
+                if (!object.equals(type)) {
+                    return -1;
+                }
+                bit = TYPE;
+            } else if (predicate.equals(OntologyVocabulary.MONTH_HAPPENED)) {
+                month = monthIndex(object);
+                if (month < 0 || ((loaded & MONTH) != 0 && months[row] != month)) {
+                    return -1;
+                }
+                bit = MONTH;
+            } else if (predicate.equals(OntologyVocabulary.HAPPENED_AT)) {
+                if (!object.isURI() || ((loaded & LOCATION) != 0 && !squares.get(locations[row]).equals(object))) {
+                    return -1;
+                }
+                bit = LOCATION;
+            } else {
+                property = Arrays.asList(properties).indexOf(predicate);
+                if (property < 0 || !object.isLiteral()) {
+                    return -1;
+                }
+                bit = FIRST_VALUE << property;
+                if ((loaded & bit) != 0) {
+                    return value(row, property).equals(object) ? 0 : -1;
+                }
+                value = columnValue(property, object);
+                if (value == null) {
+                    return -1;
+                }
+            }
+            if ((loaded & bit) != 0) {
+                return 0;
+            }
+
+            ensureCapacity(row + 1);
+            if (bit == MONTH) {
+                months[row] = (byte) month;
+            } else if (bit == LOCATION) {
+                locations[row] = squareId(object);
+                locationStarts = null;
+            } else if (value != null) {
+                if (isFloat[property]) {
+                    floatValues[property][row] = value.floatValue();
+                } else {
+                    intValues[property][row] = value.intValue();
+                }
+            }
+            if (present[row] == 0) {
+                count++;
+            }
+            present[row] |= bit;
+            rows = Math.max(rows, row + 1);
+            return 1;
+        }
+
+        // The value a column would hold for a literal, or null when it would not come back out
+        // exactly as it went in
+        private Number columnValue(int property, Node object) {
+            Object value = object.getLiteralValue();
+            if (!(value instanceof Number)) {
+                return null;
+            }
+            if (isFloat[property]) {
+                float number = ((Number) value).floatValue();
+                return OntologyVocabulary.literal(number).equals(object) ? number : null;
+            }
+            long number = ((Number) value).longValue();
+            if (number != (int) number) {
+                return null;
+            }
+            return OntologyVocabulary.literal(number).equals(object) ? (int) number : null;
+        }
+
+        private Node value(int row, int property) {
+            if (fromGrids[property]) {
+                int gridRow = gridRows[locations[row]];
+                return isFloat[property] ? OntologyVocabulary.literal(gridTemperature(property, gridRow, months[row]))
+                        : OntologyVocabulary.literal(grids.getRainfall(gridRow, months[row]));
+            }
+            return isFloat[property] ? OntologyVocabulary.literal(floatValues[property][row])
+                    : OntologyVocabulary.literal(intValues[property][row]);
+        }
+
+        private float gridTemperature(int property, int gridRow, int month) {
+            Node temperature = properties[property];
+            return temperature == OntologyVocabulary.TEMPERATURE_MAX ? grids.getTemperatureMax(gridRow, month)
+                    : temperature == OntologyVocabulary.TEMPERATURE_MEAN ? grids.getTemperatureMean(gridRow, month)
+                    : grids.getTemperatureMin(gridRow, month);
+        }
+
+        // A column is only let go when every record with a value also has a square the grids cover
+        // and a month, and the grids hold the same value there
+        int useGrids() {
+            int released = 0;
+            for (int property = 0; property < properties.length; property++) {
+                int bit = FIRST_VALUE << property;
+                boolean same = true;
+                for (int row = 0; row < rows && same; row++) {
+                    if ((present[row] & bit) == 0) {
+                        continue;
+                    }
+                    int gridRow = (present[row] & LOCATION) != 0 ? gridRows[locations[row]] : -1;
+                    if (gridRow < 0 || (present[row] & MONTH) == 0) {
+                        same = false;
+                    } else if (isFloat[property]) {
+                        same = Float.floatToIntBits(floatValues[property][row])
+                                == Float.floatToIntBits(gridTemperature(property, gridRow, months[row]));
+                    } else {
+                        same = intValues[property][row] == grids.getRainfall(gridRow, months[row]);
+                    }
+                }
+                if (same) {
+                    fromGrids[property] = true;
+                    floatValues[property] = null;
+                    intValues[property] = null;
+                    released++;
+                }
+            }
+            return released;
+        }
+
+        private void ensureCapacity(int needed) {
+            if (needed <= capacity) {
+                return;
+            }
+            while (capacity < needed) {
+                capacity *= 2;
+            }
+            present = Arrays.copyOf(present, capacity);
+            months = Arrays.copyOf(months, capacity);
+            locations = Arrays.copyOf(locations, capacity);
+            for (int i = 0; i < properties.length; i++) {
+                if (isFloat[i]) {
+                    floatValues[i] = Arrays.copyOf(floatValues[i], capacity);
+                } else {
+                    intValues[i] = Arrays.copyOf(intValues[i], capacity);
+                }
+            }
+        }
+
+        ExtendedIterator<Triple> find(Node subject, Node predicate, Node object) {
+            if (predicate.isConcrete() && !predicate.equals(OntologyVocabulary.TYPE)
+                    && !predicate.equals(OntologyVocabulary.MONTH_HAPPENED) && !predicate.equals(OntologyVocabulary.HAPPENED_AT)
+                    && !Arrays.asList(properties).contains(predicate)) {
+                return NullIterator.instance();
+            }
+
+            // Narrow down to one record, or to the records of one grid square, where the pattern allows
+            if (subject.isConcrete()) {
+                int row = recordNumber(subject);
+                if (row < 0 || row >= rows || present[row] == 0) {
+                    return NullIterator.instance();
+                }
+                return WrappedIterator.create(new Triples(new int[]{row}, 1, predicate, object));
+            }
+            // No record happened at anything but a known grid square, or has a type but its own
+            if (object.isConcrete() && predicate.equals(OntologyVocabulary.HAPPENED_AT) && !squareIds.containsKey(object)
+                    || object.isConcrete() && predicate.equals(OntologyVocabulary.TYPE) && !object.equals(type)) {
+                return NullIterator.instance();
+            }
+            if (object.isURI() && (!predicate.isConcrete() || predicate.equals(OntologyVocabulary.HAPPENED_AT))
+                    && squareIds.containsKey(object)) {
+                int square = squareIds.get(object);
+                indexLocations();
+                int start = locationStarts[square];
+                int[] rowsAt = Arrays.copyOfRange(recordsByLocation, start, locationStarts[square + 1]);
+                return WrappedIterator.create(new Triples(rowsAt, rowsAt.length, predicate, object));
+            }
+            return WrappedIterator.create(new Triples(null, rows, predicate, object));
+        }
+
+        // Groups the rows by grid square the first time a square is looked up
+        private synchronized void indexLocations() {
+            if (locationStarts != null) {
+                return;
+            }
+            int[] starts = new int[squares.size() + 1];
+            for (int row = 0; row < rows; row++) {
+                if ((present[row] & LOCATION) != 0) {
+                    starts[locations[row] + 1]++;
+                }
+            }
+            for (int i = 0; i < squares.size(); i++) {
+                starts[i + 1] += starts[i];
+            }
+            int[] next = Arrays.copyOf(starts, squares.size());
+            int[] byLocation = new int[starts[squares.size()]];
+            for (int row = 0; row < rows; row++) {
+                if ((present[row] & LOCATION) != 0) {
+                    byLocation[next[locations[row]]++] = row;
+                }
+            }
+            recordsByLocation = byLocation;
+            locationStarts = starts;
+        }
+
+        // The matching triples of the given rows, or of every row when rowList is null, a record at a
+        // time
+        private class Triples implements Iterator<Triple> {
+            private final int[] rowList;
+            private final int rowCount;
+            private final Node predicate;
+            private final Node object;
+            private final Triple[] pending = new Triple[3 + properties.length];
+            private int pendingCount;
+            private int pendingNext;
+            private int position;
+
+            Triples(int[] rowList, int rowCount, Node predicate, Node object) {
+                this.rowList = rowList;
+                this.rowCount = rowCount;
+                this.predicate = predicate;
+                this.object = object;
+            }
+
+            public boolean hasNext() {
+                while (pendingNext >= pendingCount) {
+                    if (position >= rowCount) {
+                        return false;
+                    }
+                    fill(rowList == null ? position : rowList[position]);
+                    position++;
+                }
+                return true;
+            }
+
+            public Triple next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return pending[pendingNext++];
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+            private void fill(int row) {
+                pendingCount = 0;
+                pendingNext = 0;
+                int bits = present[row];
+                if (bits == 0) {
+                    return;
+                }
+                Node subject = null;
+                if ((bits & TYPE) != 0) {
+                    subject = add(subject, row, OntologyVocabulary.TYPE, type);
+                }
+                for (int property = 0; property < properties.length; property++) {
+                    if ((bits & (FIRST_VALUE << property)) != 0 && matches(predicate, properties[property])) {
+                        subject = add(subject, row, properties[property], value(row, property));
+                    }
+                }
+                if ((bits & MONTH) != 0) {
+                    subject = add(subject, row, OntologyVocabulary.MONTH_HAPPENED, OntologyVocabulary.MONTHS[months[row]]);
+                }
+                if ((bits & LOCATION) != 0) {
+                    add(subject, row, OntologyVocabulary.HAPPENED_AT, squares.get(locations[row]));
+                }
+            }
+
+            // Subject nodes are only made for records that have a matching triple
+            private Node add(Node subject, int row, Node property, Node value) {
+                if (!matches(predicate, property) || !matches(object, value)) {
+                    return subject;
+                }
+                if (subject == null) {
+                    subject = NodeFactory.createURI(prefix + (row + 1));
+                }
+                pending[pendingCount++] = Triple.create(subject, property, value);
+                return subject;
+            }
+        }
+    }
+}
@@ -1,154 +1,125 @@
 import com.esri.core.geometry.*;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.jena.atlas.io.IO;
+import org.apache.jena.graph.Graph;
 import org.apache.jena.ontology.*;
 import org.apache.jena.rdf.model.*;
 import org.apache.jena.vocabulary.DCTerms;
 import org.apache.jena.vocabulary.RDFS;
 import org.apache.jena.vocabulary.XSD;
 import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.system.StreamOps;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.riot.system.StreamRDFWriter;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.tdb2.DatabaseMgr;
+import org.apache.jena.tdb2.loader.DataLoader;
+import org.apache.jena.tdb2.loader.LoaderFactory;
+import org.apache.jena.tdb2.loader.base.LoaderOps;
+import org.apache.jena.tdb2.sys.TDBInternal;
 
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
 
 import java.io.*;
-import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.TreeMap;
+import java.util.UUID;
 
 
 public class OntologyMaker {
     private final static String URI_BASE = "http://www.fake.com/cs7is1-project";
-    private final static String NAMESPACE = URI_BASE + "#";
-    public final static String ONTOLOGY_PATH = "files/ontologyFile.ttl";
+    final static String NAMESPACE = URI_BASE + "#";
+    // Directory the datasets are downloaded to and the ontology is written to, -DdataDir to change it
+    public final static String DATA_DIR = System.getProperty("dataDir", "files");
+    public final static String ONTOLOGY_PATH = DATA_DIR + "/ontologyFile.ttl";
+    public final static String STORE_PATH = DATA_DIR + "/tdb2";
+    public final static String BUILD_ID_PATH = DATA_DIR + "/ontologyFile.build";
+    public final static String BUILD_REPORT_PATH = DATA_DIR + "/ontologyFile.report.json";
+    public final static String BUILD_CACHE_PATH = DATA_DIR + "/build-cache";
+    public final static String GRID_FILE_PATH = DATA_DIR + "/climateGrids.bin";
     private static final String COUNTY_URL = "http://data.geohive.ie/dumps/county/default.ttl";
-    private static final String COUNTY_PATH = "files/county.ttl";
+    private static final String COUNTY_PATH = DATA_DIR + "/county.ttl";
     private static final String STATION_URL = "https://cli.fusio.net/cli/climate_data/webdata/StationDetails.csv";
-    private static final String STATION_PATH = "files/stations.csv";
-    private static final String TEMPERATURE_PATH = "files/temperatures.zip";
+    private static final String STATION_PATH = DATA_DIR + "/stations.csv";
+    private static final String TEMPERATURE_PATH = DATA_DIR + "/temperatures.zip";
     private static final String TEMPERATURE_URL = "https://www.met.ie/climate-ireland/IE_TEMP_8110_V2.zip";
-    private static final String MIN_TEMPERATURE_PATH = "files/IE_TN_8110_V2.txt";
-    private static final String MAX_TEMPERATURE_PATH = "files/IE_TX_8110_V2.txt";
-    private static final String MEAN_TEMPERATURE_PATH = "files/IE_TMEAN_8110_V2.txt";
-    private static final String RAINFALL_PATH = "files/rainfall.zip";
+    private static final String MIN_TEMPERATURE_PATH = DATA_DIR + "/IE_TN_8110_V2.txt";
+    private static final String MAX_TEMPERATURE_PATH = DATA_DIR + "/IE_TX_8110_V2.txt";
+    private static final String MEAN_TEMPERATURE_PATH = DATA_DIR + "/IE_TMEAN_8110_V2.txt";
+    private static final String RAINFALL_PATH = DATA_DIR + "/rainfall.zip";
     private static final String RAINFALL_URL = "https://www.met.ie/climate-ireland/IE_RR_8110_V1.zip";
-    private static final String MEAN_RAINFALL_PATH = "files/IE_RR_8110_V1.txt";
+    private static final String MEAN_RAINFALL_PATH = DATA_DIR + "/IE_RR_8110_V1.txt";
 
 
 
-    private static void unzip(String zippedFile, String destDirerectory) throws IOException {
-        File destDir = new File(destDirerectory);
-        byte[] buffer = new byte[1024];
-        ZipInputStream zis = new ZipInputStream(new FileInputStream(zippedFile));
-        ZipEntry zipEntry = zis.getNextEntry();
-        while (zipEntry != null) {
-            File newFile = newFile(destDir, zipEntry);
-            FileOutputStream fos = new FileOutputStream(newFile);
-            int len;
-            while ((len = zis.read(buffer)) > 0) {
-                fos.write(buffer, 0, len);
-            }
-            fos.close();
-            zipEntry = zis.getNextEntry();
-        }
-        zis.closeEntry();
-        zis.close();
-    }
-
-    private static File newFile(File destinationDir, ZipEntry zipEntry) throws IOException {
-        File destFile = new File(destinationDir, zipEntry.getName());
-
-        String destDirPath = destinationDir.getCanonicalPath();
-        String destFilePath = destFile.getCanonicalPath();
+    // Returns the number of source files that were downloaded. A source that could not be fetched, or
+    // does not match its pinned checksum, stops the build.
+    private static int createFiles(BuildOptions options) {
+        System.out.println("Checking for necessary files...");
+        List<SourceFetcher.Source> sources = new ArrayList<>();
+        sources.add(new SourceFetcher.Source(COUNTY_URL, COUNTY_PATH));
+        sources.add(new SourceFetcher.Source(STATION_URL, STATION_PATH));
+        // An archive is only needed when the data directory does not hold the grid files themselves
+        sources.add(new SourceFetcher.Source(RAINFALL_URL, RAINFALL_PATH, MEAN_RAINFALL_PATH));
+        sources.add(new SourceFetcher.Source(TEMPERATURE_URL, TEMPERATURE_PATH, MAX_TEMPERATURE_PATH, MIN_TEMPERATURE_PATH, MEAN_TEMPERATURE_PATH));
 
-        if (!destFilePath.startsWith(destDirPath + File.separator)) {
-            throw new IOException("Entry is outside of the target dir: " + zipEntry.getName());
+        try {
+            SourceFetcher fetcher = new SourceFetcher(DATA_DIR, options.isRefreshSources(), options.getThreads());
+            return fetcher.fetchAll(sources).size();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to fetch the sources", e);
         }
-
-        return destFile;
     }
 
-    private static void createFiles() {
-        Path countyPath = Paths.get(COUNTY_PATH);
-        URI countyURL = URI.create(COUNTY_URL);
-        Path stationPath = Paths.get(STATION_PATH);
-        URI stationURL = URI.create(STATION_URL);
-        Path rainfallPath = Paths.get(RAINFALL_PATH);
-        URI rainifallURL = URI.create(RAINFALL_URL);
-        Path temperaturePath = Paths.get(TEMPERATURE_PATH);
-        URI temperatureURL = URI.create(TEMPERATURE_URL);
-
-        System.out.println("Checking for necessary files...");
-        if (!Files.exists(countyPath)) {
-            try {
-                System.out.println("County Borders file not found...");
-                Files.createDirectories(countyPath.getParent());
-                System.out.println("Downloading from " + COUNTY_URL);
-                try (InputStream in = countyURL.toURL().openStream()) {
-                    Files.copy(in, countyPath);
-                }
-                System.out.println("File downloaded and stored in " + COUNTY_PATH);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        }
-
-        if (!Files.exists(stationPath)) {
-            try {
-                System.out.println("Weather Stations file not found...");
-                Files.createDirectories(countyPath.getParent());
-                System.out.println("Downloading from " + STATION_URL);
-                try (InputStream in = stationURL.toURL().openStream()) {
-                    Files.copy(in, stationPath);
-                }
-                System.out.println("File downloaded and stored in " + STATION_PATH);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        }
+    public static void createOntology() {
+        createOntology(new BuildOptions());
+    }
 
-        if (!Files.exists(rainfallPath)) {
-            try {
-                System.out.println("Rainfall file not found...");
-                Files.createDirectories(countyPath.getParent());
-                System.out.println("Downloading from " + RAINFALL_URL);
-                try (InputStream in = rainifallURL.toURL().openStream()) {
-                    Files.copy(in, Paths.get("files/rainfall.zip"));
-                }
-                System.out.println("File downloaded and stored in " + RAINFALL_PATH);
-                unzip(RAINFALL_PATH, "files");
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+    public static void createOntology(BuildOptions options) {
+        if (options.isStreamingOutput() && options.getMaterialisedReasoning() != ReasoningMode.NONE) {
+            throw new IllegalArgumentException("Inferences can only be materialised when the whole ontology is built in memory");
         }
 
-        if (!Files.exists(temperaturePath)) {
+        BuildReport report = new BuildReport();
+        BuildReport.Stage download = report.start("download");
+        download.put("fetched", createFiles(options)).end();
+
+        // Counties depend on the county file alone, stations also on the county borders they are
+        // located in
+        BuildCache cache = null;
+        String countiesFingerprint = null;
+        String stationsFingerprint = null;
+        if (options.isIncremental()) {
+            BuildReport.Stage fingerprint = report.start("fingerprint");
             try {
-                System.out.println("Temperature file not found...");
-                Files.createDirectories(temperaturePath.getParent());
-                System.out.println("Downloading from " + TEMPERATURE_URL);
-                try (InputStream in = temperatureURL.toURL().openStream()) {
-                    Files.copy(in, Paths.get(TEMPERATURE_PATH));
-                }
-                System.out.println("File downloaded and stored in " + TEMPERATURE_PATH);
-                unzip(TEMPERATURE_PATH, "files");
-            } catch (Exception e) {
+                cache = new BuildCache(BUILD_CACHE_PATH);
+                countiesFingerprint = BuildCache.fingerprint(BuildCache.fileFingerprint(COUNTY_PATH));
+                stationsFingerprint = BuildCache.fingerprint(countiesFingerprint, BuildCache.fileFingerprint(STATION_PATH));
+            } catch (IOException e) {
                 e.printStackTrace();
+                cache = null;
             }
+            fingerprint.end();
         }
-
-    }
-
-    public static void createOntology() {
-        createFiles();
-
-        OntModel model = ModelFactory.createOntologyModel();
+        boolean reuseCounties = cache != null && cache.isCurrent("counties", countiesFingerprint)
+                && cache.isCurrent("county-shapes", countiesFingerprint);
+        boolean reuseStations = reuseCounties && cache.isCurrent("stations", stationsFingerprint);
+
+        // Nothing here reads inferred triples, so the model is built without a reasoner
+        BuildReport.Stage schema = report.start("schema");
+        OntModel model = ModelFactory.createOntologyModel(OntModelSpec.OWL_MEM);
+        Graph graph = model.getBaseModel().getGraph();
         model.setNsPrefix("base", NAMESPACE);
 
         Ontology ontology = model.createOntology(URI_BASE);
@@ -614,624 +585,603 @@ public class OntologyMaker {
 
         ///Create Individuals
 
-        Model countyModel = RDFDataMgr.loadModel(COUNTY_PATH);
-
-        ResIterator countyIter = countyModel.listResourcesWithProperty(RDFS.label);
-
-        Property hasGeometry = countyModel.getProperty("http://www.opengis.net/ont/geosparql#hasGeometry");
-        Property asWKT = countyModel.getProperty("http://www.opengis.net/ont/geosparql#asWKT");
+        schema.triplesOut(graph.size()).end();
 
+        BuildReport.Stage counties = report.start("counties");
+        long triplesBefore = graph.size();
         ArrayList<Geometry> countyGeometries = new ArrayList<>();
-        ArrayList<Individual> countyIndividuals = new ArrayList<>();
 
         int individualStationID = 1;
         int individualGridSquareID = 1;
         int individualLatLongID = 1;
 
-        while (countyIter.hasNext()) {
-            Resource countyRDF = countyIter.next();
-
-            // labels
-            NodeIterator labelsIter = countyModel.listObjectsOfProperty(countyRDF, RDFS.label);
-            List<RDFNode> labels = labelsIter.toList();
-            String idLabel = "";
-            String gaLabel = "";
-            String enLabel = "";
-
-            for (RDFNode label : labels) {
-                Literal name = label.asLiteral();
-                if (name.getLanguage().equals("ga")) {
-                    gaLabel = name.getString();
-                } else if (name.getLanguage().equals("en")) {
-                    enLabel = name.getString();
-                } else {
-                    idLabel = name.getString();
+        // The borders are only read back when the stations have to be located again
+        if (reuseCounties) {
+            cache.replay("counties", StreamRDFLib.graph(graph));
+            if (!reuseStations) {
+                try {
+                    countyGeometries.addAll(cache.readGeometries("county-shapes"));
+                } catch (IOException e) {
+                    e.printStackTrace();
                 }
             }
+            counties.triplesOut(graph.size() - triplesBefore).put("reused", 1).end();
+            System.out.println("Reused the saved Geohive DataSet");
+        } else {
+            BuildCache.Recorder recorder = cache == null ? null : BuildCache.record(model);
+            Model countyModel = RDFDataMgr.loadModel(COUNTY_PATH);
 
-            // WKT
-            Resource geoResource = countyModel.listObjectsOfProperty(countyRDF, hasGeometry).next().asResource();
-            String wkt = countyModel.listObjectsOfProperty(geoResource, asWKT).next().toString();
-            wkt = wkt.substring(0, wkt.indexOf("^^"));
-            OperatorImportFromWkt importer = OperatorImportFromWkt.local();
-            Geometry geometry = importer.execute(WktImportFlags.wktImportDefaults, Geometry.Type.Unknown, wkt, null);
-            countyGeometries.add(geometry);
-
-            ArrayList<Object> info = new ArrayList<>();
-            info.add(idLabel);
-            info.add(enLabel);
-            info.add(gaLabel);
-            info.add(geometry);
-            float scale = 7365.0f;
-            info.add((float) geometry.calculateArea2D() * scale);
-            Individual aCounty = county.createIndividual(NAMESPACE + info.get(0));
-            if(idLabel.equals("ANTRIM")) {
-                aCounty.addProperty(countyIsNamed, antrim);
-            }
-            else if(idLabel.equals("ARMAGH")) {
-                aCounty.addProperty(countyIsNamed, armagh);
-            }
-            else if(idLabel.equals("CARLOW")) {
-                aCounty.addProperty(countyIsNamed, carlow);
-            }
-            else if(idLabel.equals("CAVAN")) {
-                aCounty.addProperty(countyIsNamed, cavan);
-            }
-            else if(idLabel.equals("CLARE")) {
-                aCounty.addProperty(countyIsNamed, clare);
-            }
-            else if(idLabel.equals("CORK")) {
-                aCounty.addProperty(countyIsNamed, cork);
-            }
-            else if(idLabel.equals("DERRY")) {
-                aCounty.addProperty(countyIsNamed, derry);
-            }
-            else if(idLabel.equals("DONEGAL")) {
-                aCounty.addProperty(countyIsNamed, donegal);
-            }
-            else if(idLabel.equals("DOWN")) {
-                aCounty.addProperty(countyIsNamed, down);
-            }
-            else if(idLabel.equals("DUBLIN")) {
-                aCounty.addProperty(countyIsNamed, dublin);
-            }
-            else if(idLabel.equals("FERMANAGH")) {
-                aCounty.addProperty(countyIsNamed, fermanagh);
-            }
-            else if(idLabel.equals("GALWAY")) {
-                aCounty.addProperty(countyIsNamed, galway);
-            }
-            else if(idLabel.equals("KERRY")) {
-                aCounty.addProperty(countyIsNamed, kerry);
-            }
-            else if(idLabel.equals("KILDARE")) {
-                aCounty.addProperty(countyIsNamed, kildare);
-            }
-            else if(idLabel.equals("KILKENNY")) {
-                aCounty.addProperty(countyIsNamed, kilkenny);
-            }
-            else if(idLabel.equals("LAOIS")) {
-                aCounty.addProperty(countyIsNamed, laois);
-            }
-            else if(idLabel.equals("LEITRIM")) {
-                aCounty.addProperty(countyIsNamed, leitrim);
-            }
-            else if(idLabel.equals("LIMERICK")) {
-                aCounty.addProperty(countyIsNamed, limerick);
-            }
-            else if(idLabel.equals("LONGFORD")) {
-                aCounty.addProperty(countyIsNamed, longford);
-            }
-            else if(idLabel.equals("LOUTH")) {
-                aCounty.addProperty(countyIsNamed, louth);
-            }
-            else if(idLabel.equals("MAYO")) {
-                aCounty.addProperty(countyIsNamed, mayo);
-            }
-            else if(idLabel.equals("MEATH")) {
-                aCounty.addProperty(countyIsNamed, meath);
-            }
-            else if(idLabel.equals("MONAGHAN")) {
-                aCounty.addProperty(countyIsNamed, monaghan);
-            }
-            else if(idLabel.equals("OFFALY")) {
-                aCounty.addProperty(countyIsNamed, offaly);
-            }
-            else if(idLabel.equals("ROSCOMMON")) {
-                aCounty.addProperty(countyIsNamed, roscommon);
-            }
-            else if(idLabel.equals("SLIGO")) {
-                aCounty.addProperty(countyIsNamed, sligo);
-            }
-            else if(idLabel.equals("TIPPERARY")) {
-                aCounty.addProperty(countyIsNamed, tipperary);
-            }
-            else if(idLabel.equals("TYRONE")) {
-                aCounty.addProperty(countyIsNamed, tyrone);
-            }
-            else if(idLabel.equals("WATERFORD")) {
-                aCounty.addProperty(countyIsNamed, waterford);
-            }
-            else if(idLabel.equals("WESTMEATH")) {
-                aCounty.addProperty(countyIsNamed, westmeath);
-            }
-            else if(idLabel.equals("WEXFORD")) {
-                aCounty.addProperty(countyIsNamed, wexford);
-            }
-            else if(idLabel.equals("WICKLOW")) {
-                aCounty.addProperty(countyIsNamed, wicklow);
-            }
+            ResIterator countyIter = countyModel.listResourcesWithProperty(RDFS.label);
 
-            aCounty.addLabel((String) info.get(0), null);
-            aCounty.addLabel((String) info.get(1), "en");
-            aCounty.addLabel((String) info.get(2), "ga");
-            aCounty.addLiteral(area, (float) info.get(4));
-            countyIndividuals.add(aCounty);
-        }
-        System.out.println("Finished Parsing Geohive DataSet");
+            Property hasGeometry = countyModel.getProperty("http://www.opengis.net/ont/geosparql#hasGeometry");
+            Property asWKT = countyModel.getProperty("http://www.opengis.net/ont/geosparql#asWKT");
 
-        ArrayList<Individual> latLongList = new ArrayList<>();
-        ArrayList<Individual> gridSquareList = new ArrayList<>();
-        try {
-            FileReader in = new FileReader(STATION_PATH);
-            CSVParser weatherStationCSV = CSVFormat.DEFAULT.parse(in);
-            List<CSVRecord> records = weatherStationCSV.getRecords();
-            records.remove(0);
-            records.remove(0);
-
-            ArrayList<Individual> weatherStationList = new ArrayList<>();
-
-            for (int ind = 0; ind < records.size(); ind+=50) {
-                CSVRecord record = records.get(ind);
-                int aStationID = Integer.parseInt(record.get(1));
-                String aStationName = record.get(2);
-                int aStationHeight = Integer.parseInt(record.get(3));
-                int aEasting = (Integer.parseInt(record.get(4)) + 500) / 1000 * 1000;
-                int aNorthing = (Integer.parseInt(record.get(5))+ 500) / 1000 * 1000;
-                float aLatitude = Float.parseFloat(record.get(6));
-                float aLongitude = Float.parseFloat(record.get(7));
-                int aOpenYear = Integer.parseInt(record.get(8));
-                int aCloseYear;
-                if(!record.get(9).equals("")) {
-                    aCloseYear = Integer.parseInt(record.get(9));
-                }
-                else{
-                    aCloseYear = -1;
-                }
+            ArrayList<Individual> countyIndividuals = new ArrayList<>();
 
-                Individual aGridSquare = null;
-                boolean existingGridSquareFound = false;
-                int i = 0;
-                while(i < gridSquareList.size() && !existingGridSquareFound)
-                {
-                    Individual gridSq = gridSquareList.get(i);
-                    if(gridSq.getProperty(easting).getInt()==aEasting && gridSq.getProperty(northing).getInt() == aNorthing){
-                        aGridSquare = gridSq;
-                        existingGridSquareFound = true;
-                    }
-                    else{
-                        i++;
+            OperatorImportFromWkt importer = OperatorImportFromWkt.local();
+            long wktNanos = 0;
+            while (countyIter.hasNext()) {
+                Resource countyRDF = countyIter.next();
+
+                // labels
+                NodeIterator labelsIter = countyModel.listObjectsOfProperty(countyRDF, RDFS.label);
+                List<RDFNode> labels = labelsIter.toList();
+                String idLabel = "";
+                String gaLabel = "";
+                String enLabel = "";
+
+                for (RDFNode label : labels) {
+                    Literal name = label.asLiteral();
+                    if (name.getLanguage().equals("ga")) {
+                        gaLabel = name.getString();
+                    } else if (name.getLanguage().equals("en")) {
+                        enLabel = name.getString();
+                    } else {
+                        idLabel = name.getString();
                     }
                 }
-                if(!existingGridSquareFound){
-                    aGridSquare = gridSquareLocation.createIndividual(NAMESPACE + "GridSquare" + individualGridSquareID);
-                    individualGridSquareID++;
-                    aGridSquare.addLiteral(easting, aEasting);
-                    aGridSquare.addLiteral(northing, aNorthing);
-                    gridSquareList.add(aGridSquare);
+
+                // WKT
+                Resource geoResource = countyModel.listObjectsOfProperty(countyRDF, hasGeometry).next().asResource();
+                String wkt = countyModel.listObjectsOfProperty(geoResource, asWKT).next().toString();
+                wkt = wkt.substring(0, wkt.indexOf("^^"));
+                long wktStart = System.nanoTime();
+                Geometry geometry = importer.execute(WktImportFlags.wktImportDefaults, Geometry.Type.Unknown, wkt, null);
+                wktNanos += System.nanoTime() - wktStart;
+                countyGeometries.add(geometry);
+
+                ArrayList<Object> info = new ArrayList<>();
+                info.add(idLabel);
+                info.add(enLabel);
+                info.add(gaLabel);
+                info.add(geometry);
+                float scale = 7365.0f;
+                info.add((float) geometry.calculateArea2D() * scale);
+                Individual aCounty = county.createIndividual(NAMESPACE + info.get(0));
+                if(idLabel.equals("ANTRIM")) {
+                    aCounty.addProperty(countyIsNamed, antrim);
+                }
+                else if(idLabel.equals("ARMAGH")) {
+                    aCounty.addProperty(countyIsNamed, armagh);
+                }
+                else if(idLabel.equals("CARLOW")) {
+                    aCounty.addProperty(countyIsNamed, carlow);
+                }
+                else if(idLabel.equals("CAVAN")) {
+                    aCounty.addProperty(countyIsNamed, cavan);
+                }
+                else if(idLabel.equals("CLARE")) {
+                    aCounty.addProperty(countyIsNamed, clare);
+                }
+                else if(idLabel.equals("CORK")) {
+                    aCounty.addProperty(countyIsNamed, cork);
+                }
+                else if(idLabel.equals("DERRY")) {
+                    aCounty.addProperty(countyIsNamed, derry);
+                }
+                else if(idLabel.equals("DONEGAL")) {
+                    aCounty.addProperty(countyIsNamed, donegal);
+                }
+                else if(idLabel.equals("DOWN")) {
+                    aCounty.addProperty(countyIsNamed, down);
+                }
+                else if(idLabel.equals("DUBLIN")) {
+                    aCounty.addProperty(countyIsNamed, dublin);
+                }
+                else if(idLabel.equals("FERMANAGH")) {
+                    aCounty.addProperty(countyIsNamed, fermanagh);
+                }
+                else if(idLabel.equals("GALWAY")) {
+                    aCounty.addProperty(countyIsNamed, galway);
+                }
+                else if(idLabel.equals("KERRY")) {
+                    aCounty.addProperty(countyIsNamed, kerry);
+                }
+                else if(idLabel.equals("KILDARE")) {
+                    aCounty.addProperty(countyIsNamed, kildare);
+                }
+                else if(idLabel.equals("KILKENNY")) {
+                    aCounty.addProperty(countyIsNamed, kilkenny);
+                }
+                else if(idLabel.equals("LAOIS")) {
+                    aCounty.addProperty(countyIsNamed, laois);
+                }
+                else if(idLabel.equals("LEITRIM")) {
+                    aCounty.addProperty(countyIsNamed, leitrim);
+                }
+                else if(idLabel.equals("LIMERICK")) {
+                    aCounty.addProperty(countyIsNamed, limerick);
+                }
+                else if(idLabel.equals("LONGFORD")) {
+                    aCounty.addProperty(countyIsNamed, longford);
+                }
+                else if(idLabel.equals("LOUTH")) {
+                    aCounty.addProperty(countyIsNamed, louth);
+                }
+                else if(idLabel.equals("MAYO")) {
+                    aCounty.addProperty(countyIsNamed, mayo);
+                }
+                else if(idLabel.equals("MEATH")) {
+                    aCounty.addProperty(countyIsNamed, meath);
+                }
+                else if(idLabel.equals("MONAGHAN")) {
+                    aCounty.addProperty(countyIsNamed, monaghan);
+                }
+                else if(idLabel.equals("OFFALY")) {
+                    aCounty.addProperty(countyIsNamed, offaly);
+                }
+                else if(idLabel.equals("ROSCOMMON")) {
+                    aCounty.addProperty(countyIsNamed, roscommon);
+                }
+                else if(idLabel.equals("SLIGO")) {
+                    aCounty.addProperty(countyIsNamed, sligo);
+                }
+                else if(idLabel.equals("TIPPERARY")) {
+                    aCounty.addProperty(countyIsNamed, tipperary);
+                }
+                else if(idLabel.equals("TYRONE")) {
+                    aCounty.addProperty(countyIsNamed, tyrone);
+                }
+                else if(idLabel.equals("WATERFORD")) {
+                    aCounty.addProperty(countyIsNamed, waterford);
+                }
+                else if(idLabel.equals("WESTMEATH")) {
+                    aCounty.addProperty(countyIsNamed, westmeath);
+                }
+                else if(idLabel.equals("WEXFORD")) {
+                    aCounty.addProperty(countyIsNamed, wexford);
+                }
+                else if(idLabel.equals("WICKLOW")) {
+                    aCounty.addProperty(countyIsNamed, wicklow);
                 }
 
-                Individual aLatLongLocation = null;
-                boolean existingLatLongFound = false;
-                i = 0;
-                while(i < latLongList.size() && !existingLatLongFound)
-                {
-                    Individual latLong = latLongList.get(i);
-                    if(latLong.getProperty(latitude).getFloat()==aLatitude && latLong.getProperty(longitude).getFloat() == aLongitude){
-                        aLatLongLocation = latLong;
-                        existingLatLongFound = true;
+                aCounty.addLabel((String) info.get(0), null);
+                aCounty.addLabel((String) info.get(1), "en");
+                aCounty.addLabel((String) info.get(2), "ga");
+                aCounty.addLiteral(area, (float) info.get(4));
+                countyIndividuals.add(aCounty);
+            }
+            counties.rowsIn(countyModel.size()).individualsOut(countyIndividuals.size())
+                    .triplesOut(graph.size() - triplesBefore).putNanos("wktImportMillis", wktNanos).end();
+            if (recorder != null) {
+                try {
+                    cache.save("counties", countiesFingerprint, recorder.stop());
+                    cache.saveGeometries("county-shapes", countiesFingerprint, countyGeometries);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            System.out.println("Finished Parsing Geohive DataSet");
+        }
+
+        GridSquareIndex<Individual> gridSquareIndex = new GridSquareIndex<>();
+        if (reuseStations) {
+            BuildReport.Stage stations = report.start("stations");
+            triplesBefore = graph.size();
+            cache.replay("stations", StreamRDFLib.graph(graph));
+            individualGridSquareID = restoreGridSquares(model, gridSquareLocation, easting, northing, gridSquareIndex);
+            stations.triplesOut(graph.size() - triplesBefore).put("reused", 1).end();
+            System.out.println("Reused the saved Weather Station Dataset");
+        } else {
+            BuildReport.Stage countyIndex = report.start("county-index");
+            CountyLocator countyLocator = new CountyLocator(countyGeometries);
+            countyIndex.rowsIn(countyGeometries.size()).end();
+
+            ArrayList<Individual> latLongList = new ArrayList<>();
+            BuildCache.Recorder recorder = cache == null ? null : BuildCache.record(model);
+            BuildReport.Stage stations = report.start("stations");
+            triplesBefore = graph.size();
+            long latLongScanNanos = 0;
+            long countyLookupNanos = 0;
+            try {
+                FileReader in = new FileReader(STATION_PATH);
+                CSVParser weatherStationCSV = CSVFormat.DEFAULT.parse(in);
+                List<CSVRecord> records = weatherStationCSV.getRecords();
+                records.remove(0);
+                records.remove(0);
+
+                ArrayList<Individual> weatherStationList = new ArrayList<>();
+
+                for (int ind = 0; ind < records.size(); ind+=50) {
+                    CSVRecord record = records.get(ind);
+                    int aStationID = Integer.parseInt(record.get(1));
+                    String aStationName = record.get(2);
+                    int aStationHeight = Integer.parseInt(record.get(3));
+                    int aEasting = (Integer.parseInt(record.get(4)) + 500) / 1000 * 1000;
+                    int aNorthing = (Integer.parseInt(record.get(5))+ 500) / 1000 * 1000;
+                    float aLatitude = Float.parseFloat(record.get(6));
+                    float aLongitude = Float.parseFloat(record.get(7));
+                    int aOpenYear = Integer.parseInt(record.get(8));
+                    int aCloseYear;
+                    if(!record.get(9).equals("")) {
+                        aCloseYear = Integer.parseInt(record.get(9));
                     }
                     else{
-                        i++;
+                        aCloseYear = -1;
+                    }
+
+                    Individual aGridSquare = gridSquareIndex.get(aEasting, aNorthing);
+                    if(aGridSquare == null){
+                        aGridSquare = gridSquareLocation.createIndividual(NAMESPACE + "GridSquare" + individualGridSquareID);
+                        individualGridSquareID++;
+                        aGridSquare.addLiteral(easting, aEasting);
+                        aGridSquare.addLiteral(northing, aNorthing);
+                        gridSquareIndex.put(aEasting, aNorthing, aGridSquare);
                     }
-                }
-                if(!existingLatLongFound){
-                    aLatLongLocation = latLongLocation.createIndividual(NAMESPACE + "LatLong" + individualLatLongID);
-                    individualLatLongID++;
-                    aLatLongLocation.addLiteral(latitude, aLatitude);
-                    aLatLongLocation.addLiteral(longitude, aLongitude);
-                    latLongList.add(aLatLongLocation);
-                }
 
+                    long scanStart = System.nanoTime();
+                    Individual aLatLongLocation = null;
+                    boolean existingLatLongFound = false;
+                    int i = 0;
+                    while(i < latLongList.size() && !existingLatLongFound)
+                    {
+                        Individual latLong = latLongList.get(i);
+                        if(latLong.getProperty(latitude).getFloat()==aLatitude && latLong.getProperty(longitude).getFloat() == aLongitude){
+                            aLatLongLocation = latLong;
+                            existingLatLongFound = true;
+                        }
+                        else{
+                            i++;
+                        }
+                    }
+                    if(!existingLatLongFound){
+                        aLatLongLocation = latLongLocation.createIndividual(NAMESPACE + "LatLong" + individualLatLongID);
+                        individualLatLongID++;
+                        aLatLongLocation.addLiteral(latitude, aLatitude);
+                        aLatLongLocation.addLiteral(longitude, aLongitude);
+                        latLongList.add(aLatLongLocation);
+                    }
+                    latLongScanNanos += System.nanoTime() - scanStart;
 
-                boolean containingCountyFound = false;
-                i = 0;
-                Point stationLocation = new Point(aLongitude, aLatitude);
-                while(i < countyGeometries.size() && !containingCountyFound){
 
-                    Geometry currentGeometry = countyGeometries.get(i);
-                    OperatorWithin within = OperatorWithin.local();
-                    if (within.execute(stationLocation, currentGeometry, SpatialReference.create("WGS84"), null)) {
-                        aLatLongLocation.addProperty(locatedIn, countyList.get(i));
-                        containingCountyFound = true;
+                    long lookupStart = System.nanoTime();
+                    int containingCounty = countyLocator.locate(aLongitude, aLatitude);
+                    countyLookupNanos += System.nanoTime() - lookupStart;
+                    if (containingCounty != -1) {
+                        aLatLongLocation.addProperty(locatedIn, countyList.get(containingCounty));
                     }
-                    else{
-                        i++;
+
+                    Individual aWeatherStation = weatherStation.createIndividual(NAMESPACE + "Station"+individualStationID);
+                    individualStationID++;
+                    aWeatherStation.addLiteral(stationNumber, aStationID);
+                    aWeatherStation.addLiteral(stationName, aStationName);
+                    aWeatherStation.addLiteral(height, aStationHeight);
+                    aWeatherStation.addLiteral(openYear, aOpenYear);
+                    if(aCloseYear != -1){
+                        aWeatherStation.addLiteral(closeYear, aCloseYear);
                     }
-                }
 
-                Individual aWeatherStation = weatherStation.createIndividual(NAMESPACE + "Station"+individualStationID);
-                individualStationID++;
-                aWeatherStation.addLiteral(stationNumber, aStationID);
-                aWeatherStation.addLiteral(stationName, aStationName);
-                aWeatherStation.addLiteral(height, aStationHeight);
-                aWeatherStation.addLiteral(openYear, aOpenYear);
-                if(aCloseYear != -1){
-                    aWeatherStation.addLiteral(closeYear, aCloseYear);
+                    aWeatherStation.addProperty(locatedAt, aGridSquare);
+                    aWeatherStation.addProperty(locatedAt, aLatLongLocation);
+
+                    weatherStationList.add(aWeatherStation);
                 }
+                stations.rowsIn(records.size()).individualsOut(weatherStationList.size()).triplesOut(graph.size() - triplesBefore)
+                        .putNanos("latLongScanMillis", latLongScanNanos).putNanos("countyLookupMillis", countyLookupNanos).end();
 
-                aWeatherStation.addProperty(locatedAt, aGridSquare);
-                aWeatherStation.addProperty(locatedAt, aLatLongLocation);
 
-                weatherStationList.add(aWeatherStation);
+                if (recorder != null) {
+                    cache.save("stations", stationsFingerprint, recorder.stop());
+                }
+            }
+            catch (IOException e)
+            {
+                e.printStackTrace();
             }
 
-            for(int i =0; i < weatherStationList.size() ; i++){
-                Individual weatherStationI = weatherStationList.get(i);
-                for(int j = i+1; j < weatherStationList.size(); j++){
-                    Individual weatherStationJ = weatherStationList.get(j);
+            System.out.println("Finished Parsing Weather Station Dataset");
+        }
 
-                    if(weatherStationI.getProperty(height).getInt() > weatherStationJ.getProperty(height).getInt()){
-                        weatherStationI.addProperty(higherThan, weatherStationJ);
-                    }
-                }
+        String rainfallGrid = gridPath(RAINFALL_PATH, MEAN_RAINFALL_PATH);
+        String maxTemperatureGrid = gridPath(TEMPERATURE_PATH, MAX_TEMPERATURE_PATH);
+        String minTemperatureGrid = gridPath(TEMPERATURE_PATH, MIN_TEMPERATURE_PATH);
+        String meanTemperatureGrid = gridPath(TEMPERATURE_PATH, MEAN_TEMPERATURE_PATH);
+        writeGridFile(options, cache, report, rainfallGrid, maxTemperatureGrid, minTemperatureGrid, meanTemperatureGrid);
+
+        DatasetLoader rainfallLoader = new RainfallLoader(rainfallGrid, gridSquareIndex, individualGridSquareID);
+        DatasetLoader temperatureLoader = new TemperatureLoader(maxTemperatureGrid, minTemperatureGrid, meanTemperatureGrid, gridSquareIndex);
+
+        // The weather datasets only look at which grid squares the stations are in, so they are kept
+        // when the station file changes without moving a station to a new square
+        String outputFingerprint = null;
+        if (cache != null) {
+            try {
+                String gridSquares = gridSquareFingerprint(gridSquareIndex);
+                String rainfallFingerprint = BuildCache.fingerprint(gridSquares, BuildCache.fileFingerprint(rainfallGrid));
+                String temperatureFingerprint = BuildCache.fingerprint(gridSquares, BuildCache.fileFingerprint(maxTemperatureGrid),
+                        BuildCache.fileFingerprint(minTemperatureGrid), BuildCache.fileFingerprint(meanTemperatureGrid));
+                rainfallLoader = new CachedLoader(rainfallLoader, cache, rainfallFingerprint);
+                temperatureLoader = new CachedLoader(temperatureLoader, cache, temperatureFingerprint);
+                outputFingerprint = BuildCache.fingerprint(stationsFingerprint, rainfallFingerprint, temperatureFingerprint,
+                        options.getMaterialisedReasoning().getName(), String.valueOf(options.isTdbStore()));
+            } catch (IOException e) {
+                e.printStackTrace();
             }
         }
-        catch (IOException e)
-        {
-            e.printStackTrace();
+
+        if (outputFingerprint != null && cache.isCurrent("ontology", writtenFingerprint(outputFingerprint))
+                && (!options.isTdbStore() || hasStore())) {
+            System.out.println("The ontology is up to date");
+            try {
+                report.writeTo(Paths.get(BUILD_REPORT_PATH), ontologyVersion(), options);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return;
+        }
+        if (outputFingerprint != null) {
+            cache.forget("ontology");
         }
 
-        System.out.println("Finished Parsing Weather Station Dataset");
+        List<DatasetLoader> loaders = new ArrayList<>();
+        loaders.add(rainfallLoader);
+        loaders.add(temperatureLoader);
+        DatasetPipeline pipeline = new DatasetPipeline(loaders, options, report);
+
+        if (options.isStreamingOutput()) {
+            streamToFile(model, pipeline, report);
+        } else {
+            pipeline.loadInto(graph);
+            Model output = model.getBaseModel();
+            if (options.getMaterialisedReasoning() != ReasoningMode.NONE) {
+                BuildReport.Stage materialise = report.start("materialise");
+                output = materialise(model, options.getMaterialisedReasoning());
+                materialise.rowsIn(graph.size()).triplesOut(output.size()).end();
+            }
+            BuildReport.Stage write = report.start("write");
+            writeToFile(output);
+            write.triplesOut(output.size()).put("bytes", new File(ONTOLOGY_PATH).length()).end();
+        }
 
-        try {
-            FileReader in = new FileReader(MEAN_RAINFALL_PATH);
-            CSVParser rainfallCSV = CSVFormat.DEFAULT.parse(in);
-            List<CSVRecord> records = rainfallCSV.getRecords();
-            records.remove(0);
-            int rainRecordID = 1;
+        if (options.isTdbStore()) {
+            BuildReport.Stage tdbLoad = report.start("tdb-load");
+            tdbLoad.triplesOut(loadStore(options.getMaterialisedReasoning())).end();
+        }
 
-            for(CSVRecord record : records)
-            {
-                int aEasting = Integer.parseInt(record.get(0));
-                int aNorthing = Integer.parseInt(record.get(1));
-                int janRainfall = Integer.parseInt(record.get(2));
-                int febRainfall = Integer.parseInt(record.get(3));
-                int marRainfall = Integer.parseInt(record.get(4));
-                int aprRainfall = Integer.parseInt(record.get(5));
-                int mayRainfall = Integer.parseInt(record.get(6));
-                int junRainfall = Integer.parseInt(record.get(7));
-                int julRainfall = Integer.parseInt(record.get(8));
-                int augRainfall = Integer.parseInt(record.get(9));
-                int sepRainfall = Integer.parseInt(record.get(10));
-                int octRainfall = Integer.parseInt(record.get(11));
-                int novRainfall = Integer.parseInt(record.get(12));
-                int decRainfall = Integer.parseInt(record.get(13));
-
-                boolean validLocation = false;
-                Individual currentLocation = null;
-                Individual adjacentLocation = null;
-
-                int i = 0;
-                while(i < gridSquareList.size() && !validLocation)
-                {
-                    Individual currentGridSquare = gridSquareList.get(i);
-                    if(currentGridSquare.getProperty(easting).getInt()==aEasting && currentGridSquare.getProperty(northing).getInt() == aNorthing) {
-                        currentLocation = currentGridSquare;
-                        validLocation = true;
-                    }
-                    else if(Math.abs(currentGridSquare.getProperty(easting).getInt()-aEasting)<=1000 && Math.abs(currentGridSquare.getProperty(northing).getInt() - aNorthing)<1000){
-                        adjacentLocation = currentGridSquare;
-                        validLocation = true;
-                    }
-                    else{
-                        i++;
-                    }
-                }
-                if(validLocation){
-                    if(currentLocation == null) {
-                        currentLocation = gridSquareLocation.createIndividual(NAMESPACE + "GridSquare" + individualGridSquareID);
-                        individualGridSquareID++;
-                        currentLocation.addLiteral(easting, aEasting);
-                        currentLocation.addLiteral(northing, aNorthing);
-                        currentLocation.addProperty(adjacentTo, adjacentLocation);
-                    }
-                    Individual janRainfallRecord = rainfallRecord.createIndividual(NAMESPACE + "RainRecord" + rainRecordID);
-                    rainRecordID++;
-                    janRainfallRecord.addLiteral(rainfall, janRainfall);
-                    janRainfallRecord.addProperty(monthHappened, january);
-                    janRainfallRecord.addProperty(happenedAt, currentLocation);
-
-                    Individual febRainfallRecord = rainfallRecord.createIndividual(NAMESPACE + "RainRecord" + rainRecordID);
-                    rainRecordID++;
-                    febRainfallRecord.addLiteral(rainfall, febRainfall);
-                    febRainfallRecord.addProperty(monthHappened, february);
-                    febRainfallRecord.addProperty(happenedAt, currentLocation);
-
-                    Individual marRainfallRecord = rainfallRecord.createIndividual(NAMESPACE + "RainRecord" + rainRecordID);
-                    rainRecordID++;
-                    marRainfallRecord.addLiteral(rainfall, marRainfall);
-                    marRainfallRecord.addProperty(monthHappened, march);
-                    marRainfallRecord.addProperty(happenedAt, currentLocation);
-
-                    Individual aprRainfallRecord = rainfallRecord.createIndividual(NAMESPACE + "RainRecord" + rainRecordID);
-                    rainRecordID++;
-                    aprRainfallRecord.addLiteral(rainfall, aprRainfall);
-                    aprRainfallRecord.addProperty(monthHappened, april);
-                    aprRainfallRecord.addProperty(happenedAt, currentLocation);
-
-                    Individual mayRainfallRecord = rainfallRecord.createIndividual(NAMESPACE + "RainRecord" + rainRecordID);
-                    rainRecordID++;
-                    mayRainfallRecord.addLiteral(rainfall, mayRainfall);
-                    mayRainfallRecord.addProperty(monthHappened, may);
-                    mayRainfallRecord.addProperty(happenedAt, currentLocation);
-
-                    Individual junRainfallRecord = rainfallRecord.createIndividual(NAMESPACE + "RainRecord" + rainRecordID);
-                    rainRecordID++;
-                    junRainfallRecord.addLiteral(rainfall, junRainfall);
-                    junRainfallRecord.addProperty(monthHappened, june);
-                    junRainfallRecord.addProperty(happenedAt, currentLocation);
-
-                    Individual julRainfallRecord = rainfallRecord.createIndividual(NAMESPACE + "RainRecord" + rainRecordID);
-                    rainRecordID++;
-                    julRainfallRecord.addLiteral(rainfall, julRainfall);
-                    julRainfallRecord.addProperty(monthHappened, july);
-                    julRainfallRecord.addProperty(happenedAt, currentLocation);
-
-                    Individual augRainfallRecord = rainfallRecord.createIndividual(NAMESPACE + "RainRecord" + rainRecordID);
-                    rainRecordID++;
-                    augRainfallRecord.addLiteral(rainfall,augRainfall);
-                    augRainfallRecord.addProperty(monthHappened, august);
-                    augRainfallRecord.addProperty(happenedAt, currentLocation);
-
-                    Individual sepRainfallRecord = rainfallRecord.createIndividual(NAMESPACE + "RainRecord" + rainRecordID);
-                    rainRecordID++;
-                    sepRainfallRecord.addLiteral(rainfall, sepRainfall);
-                    sepRainfallRecord.addProperty(monthHappened, september);
-                    sepRainfallRecord.addProperty(happenedAt, currentLocation);
-
-                    Individual octRainfallRecord = rainfallRecord.createIndividual(NAMESPACE + "RainRecord" + rainRecordID);
-                    rainRecordID++;
-                    octRainfallRecord.addLiteral(rainfall, octRainfall);
-                    octRainfallRecord.addProperty(monthHappened, october);
-                    octRainfallRecord.addProperty(happenedAt, currentLocation);
-
-                    Individual novRainfallRecord = rainfallRecord.createIndividual(NAMESPACE + "RainRecord" + rainRecordID);
-                    rainRecordID++;
-                    novRainfallRecord.addLiteral(rainfall, novRainfall);
-                    novRainfallRecord.addProperty(monthHappened, november);
-                    novRainfallRecord.addProperty(happenedAt, currentLocation);
-
-                    Individual decRainfallRecord = rainfallRecord.createIndividual(NAMESPACE + "RainRecord" + rainRecordID);
-                    rainRecordID++;
-                    decRainfallRecord.addLiteral(rainfall, decRainfall);
-                    decRainfallRecord.addProperty(monthHappened, december);
-                    decRainfallRecord.addProperty(happenedAt, currentLocation);
-                }
+        String buildId = writeBuildId();
+        if (outputFingerprint != null) {
+            try {
+                cache.saveFingerprint("ontology", writtenFingerprint(outputFingerprint));
+            } catch (IOException e) {
+                e.printStackTrace();
             }
         }
-        catch (IOException e)
-        {
+        try {
+            report.writeTo(Paths.get(BUILD_REPORT_PATH), buildId, options);
+            System.out.println("Build report written to " + BUILD_REPORT_PATH);
+        } catch (IOException e) {
             e.printStackTrace();
         }
 
-        System.out.println("Finished Parsing Rainfall Dataset");
-
-        try {
-            FileReader in = new FileReader(MAX_TEMPERATURE_PATH);
-            CSVParser maxTemperatureCSV = CSVFormat.DEFAULT.parse(in);
-            List<CSVRecord> maxTempRecords = maxTemperatureCSV.getRecords();
-            in = new FileReader(MIN_TEMPERATURE_PATH);
-            CSVParser minTemperatureCSV = CSVFormat.DEFAULT.parse(in);
-            List<CSVRecord> minTempRecords = minTemperatureCSV.getRecords();
-            in = new FileReader(MEAN_TEMPERATURE_PATH);
-            CSVParser meanTemperatureCSV = CSVFormat.DEFAULT.parse(in);
-            List<CSVRecord> meanTempRecords = meanTemperatureCSV.getRecords();
-            maxTempRecords.remove(0);
-            minTempRecords.remove(0);
-            meanTempRecords.remove(0);
-            int tempRecordID = 1;
-
-            for(int i = 0 ; i< maxTempRecords.size(); i++)
-            {
-                CSVRecord maxTempRecord = maxTempRecords.get(i);
-                CSVRecord minTempRecord = minTempRecords.get(i);
-                CSVRecord meanTempRecord = meanTempRecords.get(i);
-
-                int aEasting =   Integer.parseInt(maxTempRecord.get(0));
-                int aNorthing =  Integer.parseInt(maxTempRecord.get(1));
-
-                float janMaxTemp = Float.parseFloat(maxTempRecord.get(2));
-                float janMinTemp = Float.parseFloat(minTempRecord.get(2));
-                float janMeanTemp =Float.parseFloat(meanTempRecord.get(2));
-
-                float febMaxTemp = Float.parseFloat(maxTempRecord.get(3));
-                float febMinTemp = Float.parseFloat(minTempRecord.get(3));
-                float febMeanTemp =Float.parseFloat(meanTempRecord.get(3));
-
-                float marMaxTemp = Float.parseFloat(maxTempRecord.get(4));
-                float marMinTemp = Float.parseFloat(minTempRecord.get(4));
-                float marMeanTemp =Float.parseFloat(meanTempRecord.get(4));
-
-                float aprMaxTemp = Float.parseFloat(maxTempRecord.get(5));
-                float aprMinTemp = Float.parseFloat(minTempRecord.get(5));
-                float aprMeanTemp =Float.parseFloat(meanTempRecord.get(5));
+    }
 
-                float mayMaxTemp = Float.parseFloat(maxTempRecord.get(6));
-                float mayMinTemp = Float.parseFloat(minTempRecord.get(6));
-                float mayMeanTemp =Float.parseFloat(meanTempRecord.get(6));
+    // Identifies the ontology that is on disk. Uses the ID of the last build when it was written after
+    // the ontology file, otherwise a hash of the ontology file itself.
+    public static String ontologyVersion() throws IOException {
+        File buildId = new File(BUILD_ID_PATH);
+        File ontology = new File(ONTOLOGY_PATH);
+        if (buildId.isFile() && buildId.lastModified() >= ontology.lastModified()) {
+            return new String(Files.readAllBytes(buildId.toPath()), StandardCharsets.UTF_8).trim();
+        }
 
-                float junMaxTemp = Float.parseFloat(maxTempRecord.get(7));
-                float junMinTemp = Float.parseFloat(minTempRecord.get(7));
-                float junMeanTemp =Float.parseFloat(meanTempRecord.get(7));
+        try (InputStream in = new FileInputStream(ontology)) {
+            return "sha256-" + DigestUtils.sha256Hex(in);
+        }
+    }
 
-                float julMaxTemp = Float.parseFloat(maxTempRecord.get(8));
-                float julMinTemp = Float.parseFloat(minTempRecord.get(8));
-                float julMeanTemp =Float.parseFloat(meanTempRecord.get(8));
+    // The grid file does not depend on the stations, so it is written, or found up to date, before the
+    // ontology is. Without the option any earlier grid file is removed rather than left to go stale.
+    private static void writeGridFile(BuildOptions options, BuildCache cache, BuildReport report, String rainfallGrid,
+                                      String maxTemperatureGrid, String minTemperatureGrid, String meanTemperatureGrid) {
+        try {
+            if (!options.isGridFile()) {
+                Files.deleteIfExists(Paths.get(GRID_FILE_PATH));
+                return;
+            }
 
-                float augMaxTemp = Float.parseFloat(maxTempRecord.get(9));
-                float augMinTemp = Float.parseFloat(minTempRecord.get(9));
-                float augMeanTemp =Float.parseFloat(meanTempRecord.get(9));
+            BuildReport.Stage stage = report.start("grid-file");
+            String fingerprint = null;
+            if (cache != null) {
+                fingerprint = BuildCache.fingerprint(String.valueOf(ClimateGridFile.VERSION), BuildCache.fileFingerprint(rainfallGrid),
+                        BuildCache.fileFingerprint(maxTemperatureGrid), BuildCache.fileFingerprint(minTemperatureGrid),
+                        BuildCache.fileFingerprint(meanTemperatureGrid));
+                if (cache.isCurrent("grid-file", fingerprint) && new File(GRID_FILE_PATH).isFile()) {
+                    System.out.println("The grid file is up to date");
+                    stage.end();
+                    return;
+                }
+                cache.forget("grid-file");
+            }
 
-                float sepMaxTemp = Float.parseFloat(maxTempRecord.get(10));
-                float sepMinTemp = Float.parseFloat(minTempRecord.get(10));
-                float sepMeanTemp =Float.parseFloat(meanTempRecord.get(10));
+            int squares = ClimateGridFile.write(GRID_FILE_PATH, rainfallGrid, maxTemperatureGrid, minTemperatureGrid, meanTemperatureGrid);
+            if (fingerprint != null) {
+                cache.saveFingerprint("grid-file", fingerprint);
+            }
+            stage.put("squares", squares).put("bytes", new File(GRID_FILE_PATH).length()).end();
+            System.out.println("Wrote " + squares + " grid squares to " + GRID_FILE_PATH);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 
-                float octMaxTemp = Float.parseFloat(maxTempRecord.get(11));
-                float octMinTemp = Float.parseFloat(minTempRecord.get(11));
-                float octMeanTemp =Float.parseFloat(meanTempRecord.get(11));
+    // Grids are read straight out of the downloaded archive. A data directory without the archive,
+    // such as a generated one, holds the grid files themselves.
+    private static String gridPath(String archivePath, String gridPath) {
+        if (!new File(archivePath).isFile()) {
+            return gridPath;
+        }
+        return archivePath + MonthlyGridReader.ARCHIVE_SEPARATOR + new File(gridPath).getName();
+    }
 
-                float novMaxTemp = Float.parseFloat(maxTempRecord.get(12));
-                float novMinTemp = Float.parseFloat(minTempRecord.get(12));
-                float novMeanTemp =Float.parseFloat(meanTempRecord.get(12));
+    // Ties the fingerprint of the inputs to the ontology file they were written to, so the file
+    // being changed or removed since is noticed too
+    private static String writtenFingerprint(String outputFingerprint) {
+        File ontology = new File(ONTOLOGY_PATH);
+        return BuildCache.fingerprint(outputFingerprint,
+                ontology.isFile() ? ontology.length() + " " + ontology.lastModified() : "missing");
+    }
 
-                float decMaxTemp = Float.parseFloat(maxTempRecord.get(13));
-                float decMinTemp = Float.parseFloat(minTempRecord.get(13));
-                float decMeanTemp =Float.parseFloat(meanTempRecord.get(13));
+    // Covers the number and position of every station grid square, which is all the weather datasets
+    // read from the stations
+    private static String gridSquareFingerprint(GridSquareIndex<? extends Resource> gridSquares) {
+        StringBuilder text = new StringBuilder();
+        for (int id = 0; id < gridSquares.size(); id++) {
+            text.append(gridSquares.getSquare(id).getURI()).append(' ')
+                    .append(gridSquares.getEasting(id)).append(' ')
+                    .append(gridSquares.getNorthing(id)).append('\n');
+        }
+        return BuildCache.fingerprint(text.toString());
+    }
 
+    // Puts the grid squares of reused stations back into the index in the order they were numbered,
+    // which is the order the station loop put them in. Returns the next free grid square ID.
+    private static int restoreGridSquares(OntModel model, OntClass gridSquareLocation, DatatypeProperty easting,
+                                          DatatypeProperty northing, GridSquareIndex<Individual> gridSquareIndex) {
+        String prefix = NAMESPACE + "GridSquare";
+        TreeMap<Integer, Individual> squares = new TreeMap<>();
+        for (Individual square : model.listIndividuals(gridSquareLocation).toList()) {
+            squares.put(Integer.parseInt(square.getURI().substring(prefix.length())), square);
+        }
+        for (Individual square : squares.values()) {
+            gridSquareIndex.put(square.getProperty(easting).getInt(), square.getProperty(northing).getInt(), square);
+        }
+        return squares.isEmpty() ? 1 : squares.lastKey() + 1;
+    }
 
-                Individual currentLocation = null;
+    private static String writeBuildId() {
+        String buildId = System.currentTimeMillis() + "-" + UUID.randomUUID();
+        try {
+            Files.write(Paths.get(BUILD_ID_PATH), buildId.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return buildId;
+    }
 
-                boolean validLocation = false;
-                int j = 0;
-                while(j < gridSquareList.size() && !validLocation)
-                {
-                    Individual currentGridSquare = gridSquareList.get(j);
-                    if(currentGridSquare.getProperty(easting).getInt()==aEasting && currentGridSquare.getProperty(northing).getInt() == aNorthing) {
-                        currentLocation = currentGridSquare;
-                        validLocation = true;
-                    }
-                    else{
-                        j++;
-                    }
-                }
-                if(validLocation){
-
-                    Individual janTempRecord = temperatureRecord.createIndividual(NAMESPACE + "TemperatureRecord" + tempRecordID);
-                    tempRecordID++;
-                    janTempRecord.addLiteral(temperatureMax, janMaxTemp);
-                    janTempRecord.addLiteral(temperatureMean, janMeanTemp);
-                    janTempRecord.addLiteral(temperatureMin, janMinTemp);
-                    janTempRecord.addProperty(happenedAt, currentLocation);
-                    janTempRecord.addProperty(monthHappened, january);
-
-                    Individual febTempRecord = temperatureRecord.createIndividual(NAMESPACE + "TemperatureRecord" + tempRecordID);
-                    tempRecordID++;
-                    febTempRecord.addLiteral(temperatureMax, febMaxTemp);
-                    febTempRecord.addLiteral(temperatureMean, febMeanTemp);
-                    febTempRecord.addLiteral(temperatureMin, febMinTemp);
-                    febTempRecord.addProperty(happenedAt, currentLocation);
-                    febTempRecord.addProperty(monthHappened, february);
-
-                    Individual marTempRecord = temperatureRecord.createIndividual(NAMESPACE + "TemperatureRecord" + tempRecordID);
-                    tempRecordID++;
-                    marTempRecord.addLiteral(temperatureMax, marMaxTemp);
-                    marTempRecord.addLiteral(temperatureMean, marMeanTemp);
-                    marTempRecord.addLiteral(temperatureMin, marMinTemp);
-                    marTempRecord.addProperty(happenedAt, currentLocation);
-                    marTempRecord.addProperty(monthHappened, march);
-
-                    Individual aprTempRecord = temperatureRecord.createIndividual(NAMESPACE + "TemperatureRecord" + tempRecordID);
-                    tempRecordID++;
-                    aprTempRecord.addLiteral(temperatureMax, aprMaxTemp);
-                    aprTempRecord.addLiteral(temperatureMean, aprMeanTemp);
-                    aprTempRecord.addLiteral(temperatureMin, aprMinTemp);
-                    aprTempRecord.addProperty(happenedAt, currentLocation);
-                    aprTempRecord.addProperty(monthHappened, april);
-
-                    Individual mayTempRecord = temperatureRecord.createIndividual(NAMESPACE + "TemperatureRecord" + tempRecordID);
-                    tempRecordID++;
-                    mayTempRecord.addLiteral(temperatureMax, mayMaxTemp);
-                    mayTempRecord.addLiteral(temperatureMean, mayMeanTemp);
-                    mayTempRecord.addLiteral(temperatureMin, mayMinTemp);
-                    mayTempRecord.addProperty(happenedAt, currentLocation);
-                    mayTempRecord.addProperty(monthHappened, may);
-
-                    Individual junTempRecord = temperatureRecord.createIndividual(NAMESPACE + "TemperatureRecord" + tempRecordID);
-                    tempRecordID++;
-                    junTempRecord.addLiteral(temperatureMax, junMaxTemp);
-                    junTempRecord.addLiteral(temperatureMean, junMeanTemp);
-                    junTempRecord.addLiteral(temperatureMin, junMinTemp);
-                    junTempRecord.addProperty(happenedAt, currentLocation);
-                    junTempRecord.addProperty(monthHappened, june);
-
-                    Individual julTempRecord = temperatureRecord.createIndividual(NAMESPACE + "TemperatureRecord" + tempRecordID);
-                    tempRecordID++;
-                    julTempRecord.addLiteral(temperatureMax, julMaxTemp);
-                    julTempRecord.addLiteral(temperatureMean, julMeanTemp);
-                    julTempRecord.addLiteral(temperatureMin, julMinTemp);
-                    julTempRecord.addProperty(happenedAt, currentLocation);
-                    julTempRecord.addProperty(monthHappened, july);
-
-                    Individual augTempRecord = temperatureRecord.createIndividual(NAMESPACE + "TemperatureRecord" + tempRecordID);
-                    tempRecordID++;
-                    augTempRecord.addLiteral(temperatureMax, augMaxTemp);
-                    augTempRecord.addLiteral(temperatureMean, augMeanTemp);
-                    augTempRecord.addLiteral(temperatureMin, augMinTemp);
-                    augTempRecord.addProperty(happenedAt, currentLocation);
-                    augTempRecord.addProperty(monthHappened, august);
-
-                    Individual sepTempRecord = temperatureRecord.createIndividual(NAMESPACE + "TemperatureRecord" + tempRecordID);
-                    tempRecordID++;
-                    sepTempRecord.addLiteral(temperatureMax, sepMaxTemp);
-                    sepTempRecord.addLiteral(temperatureMean, sepMeanTemp);
-                    sepTempRecord.addLiteral(temperatureMin, sepMinTemp);
-                    sepTempRecord.addProperty(happenedAt, currentLocation);
-                    sepTempRecord.addProperty(monthHappened, september);
-
-                    Individual octTempRecord = temperatureRecord.createIndividual(NAMESPACE + "TemperatureRecord" + tempRecordID);
-                    tempRecordID++;
-                    octTempRecord.addLiteral(temperatureMax, octMaxTemp);
-                    octTempRecord.addLiteral(temperatureMean, octMeanTemp);
-                    octTempRecord.addLiteral(temperatureMin, octMinTemp);
-                    octTempRecord.addProperty(happenedAt, currentLocation);
-                    octTempRecord.addProperty(monthHappened, october);
-
-                    Individual novTempRecord = temperatureRecord.createIndividual(NAMESPACE + "TemperatureRecord" + tempRecordID);
-                    tempRecordID++;
-                    novTempRecord.addLiteral(temperatureMax, novMaxTemp);
-                    novTempRecord.addLiteral(temperatureMean, novMeanTemp);
-                    novTempRecord.addLiteral(temperatureMin, novMinTemp);
-                    novTempRecord.addProperty(happenedAt, currentLocation);
-                    novTempRecord.addProperty(monthHappened, november);
-
-                    Individual decTempRecord = temperatureRecord.createIndividual(NAMESPACE + "TemperatureRecord" + tempRecordID);
-                    tempRecordID++;
-                    decTempRecord.addLiteral(temperatureMax, decMaxTemp);
-                    decTempRecord.addLiteral(temperatureMean, decMeanTemp);
-                    decTempRecord.addLiteral(temperatureMin, decMinTemp);
-                    decTempRecord.addProperty(happenedAt, currentLocation);
-                    decTempRecord.addProperty(monthHappened, december);
+    public static boolean hasStore() {
+        try {
+            return OntologyStore.current() != null;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
 
+    // Bulk loads the freshly written ontology file into a new TDB2 store, which QueryHandler then
+    // opens in place of parsing the Turtle file. The store only becomes current once it is loaded, and
+    // the stores it replaces stay on disk until nothing reads them. The store records the inferences
+    // materialised into it, so queries need no reasoner for them. Returns the number of triples
+    // loaded, or -1.
+    private static long loadStore(ReasoningMode materialised) {
+        File directory = null;
+        try {
+            directory = OntologyStore.create();
+            DatasetGraph store = DatabaseMgr.connectDatasetGraph(directory.getPath());
+            long triples;
+            try {
+                DataLoader loader = LoaderFactory.createLoader(store, LoaderOps.nullOutput());
+                loader.startBulk();
+                try {
+                    loader.load(ONTOLOGY_PATH);
+                    loader.finishBulk();
+                } catch (RuntimeException e) {
+                    loader.finishException(e);
+                    throw e;
                 }
+                triples = loader.countTriples();
+            } finally {
+                // Readers open the store through connections of their own
+                TDBInternal.expel(store);
             }
-        }
-        catch (IOException e)
-        {
+            OntologyStore.publish(directory, materialised);
+            System.out.println("Loaded " + triples + " triples into " + directory);
+            return triples;
+        } catch (Exception e) {
             e.printStackTrace();
+            if (directory != null) {
+                FileUtils.deleteQuietly(directory);
+            }
+            return -1;
         }
+    }
 
-        System.out.println("Finished Parsing Temperature Datasets");
-
-        writeToFile(model);
+    // Writes the schema, counties and stations up front as Turtle blocks, then lets the weather
+    // records go straight to the file as they are created instead of collecting them in the model.
+    // The file only replaces the ontology once it is complete, a failed load leaves the old one.
+    private static void streamToFile(OntModel ontModel, DatasetPipeline pipeline, BuildReport report) {
+        Path target = Paths.get(ONTOLOGY_PATH);
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16)) {
+                BuildReport.Stage write = report.start("write");
+                Graph graph = ontModel.getBaseModel().getGraph();
+                StreamRDF stream = StreamRDFWriter.getWriterStream(out, RDFFormat.TURTLE_BLOCKS);
+                stream.start();
+                StreamOps.sendGraphToStream(graph, stream);
+                stream.finish();
+                write.triplesOut(graph.size()).end();
+                pipeline.writeTo(out);
+            }
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write " + ONTOLOGY_PATH, e);
+        } finally {
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
 
+    // Runs the reasoner over the finished ontology once and returns the asserted and inferred triples
+    // together, so queries can be answered later without any reasoner
+    private static Model materialise(OntModel ontModel, ReasoningMode reasoning) {
+        OntModel inferred = ModelFactory.createOntologyModel(reasoning.getSpec(), ontModel.getBaseModel());
+        Model closure = ModelFactory.createDefaultModel();
+        closure.setNsPrefixes(ontModel.getNsPrefixMap());
+        closure.add(inferred);
+        System.out.println("Materialised " + (closure.size() - ontModel.getBaseModel().size()) + " inferred triples");
+        return closure;
     }
 
-    private static void writeToFile(OntModel ontModel) {
+    // Replaces the ontology only once the new one is complete, so a reload never reads half a file
+    private static void writeToFile(Model ontModel) {
+        Path target = Paths.get(ONTOLOGY_PATH);
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
         try {
-            ontModel.write(new FileWriter(ONTOLOGY_PATH), "TURTLE");
-        } catch (Exception e) {
-            e.printStackTrace();
+            try (Writer out = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+                ontModel.write(out, "TURTLE");
+            }
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write " + ONTOLOGY_PATH, e);
+        } finally {
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
     }
 }
@@ -0,0 +1,198 @@
+import org.apache.commons.io.FileUtils;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.tdb2.DatabaseMgr;
+import org.apache.jena.tdb2.sys.TDBInternal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+// The TDB2 stores OntologyMaker builds, each in a directory of its own under OntologyMaker.STORE_PATH,
+// and the file "current" there naming the one queries open. A store never changes once it is current:
+// a build loads a new directory and then points "current" at it, so readers never wait for a build
+// and never see one half loaded.
+//
+// Whoever reads a store holds a shared lock on its lock file, and a build only deletes the old stores
+// it can lock for itself. A JVM can lock a file only once, so the readers in one JVM share a Lease.
+public class OntologyStore {
+    private static final String CURRENT = "current";
+    private static final String LOCK_FILE = "in-use.lock";
+    private static final String MATERIALISED = "materialised";
+    private static final Map<File, Lease> LEASES = new HashMap<>();
+
+    // The directory of the current store, or null when no store was built
+    public static File current() throws IOException {
+        Path pointer = Paths.get(OntologyMaker.STORE_PATH, CURRENT);
+        if (!Files.isRegularFile(pointer)) {
+            return null;
+        }
+        String name = new String(Files.readAllBytes(pointer), StandardCharsets.UTF_8).trim();
+        File directory = new File(OntologyMaker.STORE_PATH, name);
+        return name.isEmpty() || !directory.isDirectory() ? null : directory;
+    }
+
+    // A new empty directory to load a store into
+    public static File create() throws IOException {
+        File directory = new File(OntologyMaker.STORE_PATH, System.currentTimeMillis() + "-" + UUID.randomUUID());
+        Files.createDirectories(directory.toPath());
+        return directory;
+    }
+
+    // Points queries at store from now on, then deletes the older stores that nothing is reading.
+    // Stores created after this one may still be loading, so they are left alone. materialised is the
+    // reasoning whose inferences the store already holds.
+    public static void publish(File store, ReasoningMode materialised) throws IOException {
+        Files.write(new File(store, MATERIALISED).toPath(), materialised.getName().getBytes(StandardCharsets.UTF_8));
+        Path pointer = Paths.get(OntologyMaker.STORE_PATH, CURRENT);
+        Path temporary = pointer.resolveSibling(CURRENT + ".tmp");
+        Files.write(temporary, store.getName().getBytes(StandardCharsets.UTF_8));
+        Files.move(temporary, pointer, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        File[] stores = new File(OntologyMaker.STORE_PATH).listFiles();
+        for (File old : stores == null ? new File[0] : stores) {
+            if (old.isDirectory() && createdMillis(old) < createdMillis(store)) {
+                removeUnused(old);
+            }
+        }
+    }
+
+    // When create made the directory, or -1 for anything else, such as the files of a store from
+    // before stores had directories of their own
+    private static long createdMillis(File store) {
+        String name = store.getName();
+        int dash = name.indexOf('-');
+        try {
+            return dash > 0 ? Long.parseLong(name.substring(0, dash)) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void removeUnused(File store) {
+        try (FileChannel channel = FileChannel.open(new File(store, LOCK_FILE).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                // Read by this JVM
+                lock = null;
+            }
+            if (lock == null) {
+                System.out.println("Keeping " + store + " until nothing reads it");
+                return;
+            }
+            FileUtils.deleteDirectory(store);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Opens the current store for reading, or returns null when no store was built. The caller must
+    // close the lease once it has finished with the store.
+    public static synchronized Lease open() throws IOException {
+        while (true) {
+            File store = current();
+            if (store == null) {
+                return null;
+            }
+            Lease lease = LEASES.get(store);
+            if (lease != null) {
+                lease.users++;
+                return lease;
+            }
+
+            FileChannel channel = FileChannel.open(new File(store, LOCK_FILE).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                channel.lock(0, Long.MAX_VALUE, true);
+                // A build may have moved on and deleted the store before it was locked
+                if (store.equals(current())) {
+                    lease = new Lease(store, channel, DatasetFactory.wrap(DatabaseMgr.connectDatasetGraph(store.getPath())),
+                            materialised(store));
+                    LEASES.put(store, lease);
+                    return lease;
+                }
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+            channel.close();
+        }
+    }
+
+    // Stores published before stores recorded it hold no inferences
+    private static ReasoningMode materialised(File store) throws IOException {
+        Path path = new File(store, MATERIALISED).toPath();
+        if (!Files.isRegularFile(path)) {
+            return ReasoningMode.NONE;
+        }
+        return ReasoningMode.fromName(new String(Files.readAllBytes(path), StandardCharsets.UTF_8).trim());
+    }
+
+    // One store held open for reading by this JVM
+    public static class Lease implements Closeable {
+        private final File directory;
+        private final FileChannel lockChannel;
+        private final Dataset dataset;
+        private final ReasoningMode materialised;
+        private int users = 1;
+
+        private Lease(File directory, FileChannel lockChannel, Dataset dataset, ReasoningMode materialised) {
+            this.directory = directory;
+            this.lockChannel = lockChannel;
+            this.dataset = dataset;
+            this.materialised = materialised;
+        }
+
+        public Dataset getDataset() {
+            return dataset;
+        }
+
+        // The reasoning whose inferences the store already holds
+        public ReasoningMode getMaterialised() {
+            return materialised;
+        }
+
+        // Unique to the build that loaded the store
+        public String getName() {
+            return directory.getName();
+        }
+
+        // The last user to close the lease releases the store's connection and its lock, and deletes
+        // the store if a newer one has replaced it and no other process reads it
+        public void close() {
+            synchronized (OntologyStore.class) {
+                if (--users > 0) {
+                    return;
+                }
+                LEASES.remove(directory);
+                try {
+                    TDBInternal.expel(dataset.asDatasetGraph());
+                } finally {
+                    try {
+                        lockChannel.close();
+                        if (!directory.equals(current())) {
+                            removeUnused(directory);
+                        }
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.vocabulary.RDF;
+
+// Nodes of the ontology terms used when weather records are written straight out as triples, or
+// answered by StationHeightFunction and ClimateGridFunction.
+// The URIs must stay in step with the classes and properties declared in OntologyMaker.
+public class OntologyVocabulary {
+    public static final String NAMESPACE = OntologyMaker.NAMESPACE;
+
+    public static final Node TYPE = RDF.type.asNode();
+
+    public static final Node GRID_SQUARE_LOCATION = term("GridSquareLocation");
+    public static final Node RAINFALL_RECORD = term("RainfallRecord");
+    public static final Node TEMPERATURE_RECORD = term("TemperatureRecord");
+
+    public static final Node EASTING = term("easting");
+    public static final Node NORTHING = term("northing");
+    public static final Node ADJACENT_TO = term("adjacentTo");
+    public static final Node RAINFALL = term("rainfall");
+    public static final Node TEMPERATURE_MAX = term("temperatureMax");
+    public static final Node TEMPERATURE_MIN = term("temperatureMin");
+    public static final Node TEMPERATURE_MEAN = term("temperatureMean");
+    public static final Node HAPPENED_AT = term("happenedAt");
+    public static final Node MONTH_HAPPENED = term("monthHappened");
+    public static final Node HEIGHT = term("height");
+    public static final Node HIGHER_THAN = term("higherThan");
+    public static final Node LOWER_THAN = term("lowerThan");
+    public static final Node RAINFALL_AT = term("rainfallAt");
+    public static final Node TEMPERATURE_MAX_AT = term("temperatureMaxAt");
+    public static final Node TEMPERATURE_MEAN_AT = term("temperatureMeanAt");
+    public static final Node TEMPERATURE_MIN_AT = term("temperatureMinAt");
+
+    // "Novemeber" is the URI the ontology has always been published with
+    public static final Node[] MONTHS = {
+            term("January"), term("February"), term("March"), term("April"), term("May"), term("June"),
+            term("July"), term("August"), term("September"), term("October"), term("Novemeber"), term("December")
+    };
+
+    public static Node gridSquare(int id) {
+        return term("GridSquare" + id);
+    }
+
+    public static Node rainRecord(int id) {
+        return term("RainRecord" + id);
+    }
+
+    public static Node temperatureRecord(int id) {
+        return term("TemperatureRecord" + id);
+    }
+
+    // Same datatypes Individual.addLiteral() picks for int and float values (xsd:long and xsd:float)
+    public static Node literal(long value) {
+        return ResourceFactory.createTypedLiteral(value).asNode();
+    }
+
+    public static Node literal(float value) {
+        return ResourceFactory.createTypedLiteral(value).asNode();
+    }
+
+    private static Node term(String localName) {
+        return NodeFactory.createURI(NAMESPACE + localName);
+    }
+}
@@ -0,0 +1,217 @@
+import org.apache.jena.query.*;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.shared.PrefixMapping;
+import org.apache.jena.sparql.util.FmtUtils;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+// An open SELECT whose rows are pulled from the ResultSet a page at a time, so the first rows are
+// available straight away and only the pages asked for are ever held in memory.
+// TDB2 transactions belong to the thread that began them, so the query is opened, read and closed
+// on a single worker thread of its own. A pool could not share its threads between results, as each
+// thread stays in the transaction of its results until they close, so every open PagedResults costs
+// one mostly idle thread. Close results as soon as they are no longer paged through.
+public class PagedResults implements Closeable {
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "paged-results");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final QueryHandler.Snapshot snapshot;
+    private final QueryTask task;
+    private final PrefixMapping prefixes;
+    private final QueryMetrics metrics;
+    private long startNanos;
+    private long firstRowNanos = -1;
+    private QueryExecution execution;
+    private ResultSet resultSet;
+    private List<String> columns;
+    private int rowCount;
+    private boolean exhausted;
+    // Whether start began the read transaction, which release must then end
+    private boolean begun;
+    private boolean closed;
+
+    private PagedResults(QueryHandler.Snapshot snapshot, CompiledQuery query, QueryMetrics metrics, QueryTask task) {
+        this.snapshot = snapshot;
+        this.task = task;
+        this.prefixes = query.getQuery().getPrefixMapping();
+        this.metrics = metrics;
+    }
+
+    // Holds a read transaction on snapshot for as long as the results are open. The snapshot must have
+    // been acquired for the results, which release it when they close.
+    static PagedResults open(QueryHandler.Snapshot snapshot, final CompiledQuery query, QueryMetrics metrics, QueryTask task) {
+        final PagedResults results = new PagedResults(snapshot, query, metrics, task);
+        try {
+            results.call(new Callable<Void>() {
+                public Void call() {
+                    results.start(query);
+                    return null;
+                }
+            });
+        } catch (RuntimeException e) {
+            // An interrupted wait leaves start to run on, so the snapshot is released after it
+            results.worker.execute(new Runnable() {
+                public void run() {
+                    results.release();
+                }
+            });
+            results.worker.shutdown();
+            throw e;
+        }
+        return results;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    // Rows handed out by fetch so far
+    public synchronized int getRowCount() {
+        return rowCount;
+    }
+
+    public synchronized boolean isExhausted() {
+        return exhausted;
+    }
+
+    // Reads up to pageSize more rows, each cell formatted as in the text output. An empty list means
+    // the results are exhausted.
+    public List<String[]> fetch(final int pageSize) {
+        return call(new Callable<List<String[]>>() {
+            public List<String[]> call() {
+                return readPage(pageSize);
+            }
+        });
+    }
+
+    public void close() {
+        if (worker.isShutdown()) {
+            return;
+        }
+        try {
+            call(new Callable<Void>() {
+                public Void call() {
+                    finish();
+                    return null;
+                }
+            });
+        } finally {
+            worker.shutdown();
+        }
+    }
+
+    private void start(CompiledQuery query) {
+        try {
+            // A begin that fails has already released the snapshot
+            snapshot.begin();
+            begun = true;
+            execution = query.createExecution(snapshot.getDataset());
+            if (task != null) {
+                // Only the wait for the first row is limited, the user may page through at leisure
+                if (task.getTimeoutMillis() > 0) {
+                    execution.setTimeout(task.getTimeoutMillis(), -1);
+                }
+                task.attach(execution);
+            }
+            CountingGraph.takeCount();
+            startNanos = System.nanoTime();
+            resultSet = execution.execSelect();
+            columns = resultSet.getResultVars();
+        } catch (RuntimeException e) {
+            fail(e);
+            throw e;
+        }
+    }
+
+    private List<String[]> readPage(int pageSize) {
+        List<String[]> page = new ArrayList<>(Math.min(pageSize, 1024));
+        if (closed || exhausted) {
+            return page;
+        }
+        try {
+            if (firstRowNanos < 0) {
+                resultSet.hasNext();
+                firstRowNanos = System.nanoTime() - startNanos;
+            }
+            while (page.size() < pageSize && resultSet.hasNext()) {
+                QuerySolution solution = resultSet.next();
+                String[] row = new String[columns.size()];
+                for (int i = 0; i < row.length; i++) {
+                    RDFNode node = solution.get(columns.get(i));
+                    row[i] = node == null ? "" : FmtUtils.stringForNode(node.asNode(), prefixes);
+                }
+                page.add(row);
+            }
+            synchronized (this) {
+                rowCount += page.size();
+                exhausted = !resultSet.hasNext();
+            }
+        } catch (RuntimeException e) {
+            fail(e);
+            throw e;
+        }
+
+        // Nothing more to read, so give the execution and transaction back straight away
+        if (exhausted) {
+            finish();
+        }
+        return page;
+    }
+
+    private void fail(RuntimeException e) {
+        if (!closed) {
+            metrics.recordFailure(e instanceof QueryCancelledException);
+        }
+        release();
+    }
+
+    // Records the execution, which only has a total time if every row was read
+    private void finish() {
+        if (!closed && firstRowNanos >= 0) {
+            long totalNanos = exhausted ? System.nanoTime() - startNanos : -1;
+            metrics.recordExecution(firstRowNanos, totalNanos, rowCount, snapshot.countsTriples() ? CountingGraph.takeCount() : -1);
+        }
+        release();
+    }
+
+    private void release() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (execution != null) {
+                execution.close();
+            }
+        } finally {
+            if (task != null) {
+                task.detach();
+            }
+            if (begun) {
+                snapshot.end();
+            }
+        }
+    }
+
+    private <T> T call(Callable<T> work) {
+        try {
+            return worker.submit(work).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryCancelledException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,190 @@
+import org.apache.jena.atlas.json.JsonArray;
+import org.apache.jena.atlas.json.JsonNumber;
+import org.apache.jena.atlas.json.JsonObject;
+import org.apache.jena.query.QueryCancelledException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Runs a set of queries at once over one QueryHandler, such as every question against a new build, and
+// gives back each one's answer and timing. The queries share the handler's loaded ontology, they are
+// only spread over threads.
+public class QueryBatch {
+    private final QueryHandler handler;
+    private final int threads;
+    private final long timeoutMillis;
+
+    // timeoutMillis bounds each query on its own, 0 or less lets them run for as long as they need
+    public QueryBatch(QueryHandler handler, int threads, long timeoutMillis) {
+        this.handler = handler;
+        this.threads = threads;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    // Every question in sparql_queries, so they are counted in the metrics of their question
+    public List<Result> runQuestions() throws InterruptedException {
+        Map<String, Callable<String>> queries = new LinkedHashMap<>();
+        for (int i = 0; i < handler.getQuestionCount(); i++) {
+            final int index = i;
+            queries.put(handler.getQuestionName(i), new Callable<String>() {
+                public String call() {
+                    return handler.execute(index, new QueryTask(timeoutMillis));
+                }
+            });
+        }
+        return runAll(queries);
+    }
+
+    // queries maps a name for each query, such as its file name, to its text
+    public List<Result> run(Map<String, String> queries) throws InterruptedException {
+        Map<String, Callable<String>> tasks = new LinkedHashMap<>();
+        for (Map.Entry<String, String> query : queries.entrySet()) {
+            final String sparql = query.getValue();
+            tasks.put(query.getKey(), new Callable<String>() {
+                public String call() {
+                    return handler.execute(sparql, new QueryTask(timeoutMillis));
+                }
+            });
+        }
+        return runAll(tasks);
+    }
+
+    // Reads query files by name, taking every file of a directory in name order
+    public static Map<String, String> readQueries(List<Path> paths) throws IOException {
+        Map<String, String> queries = new LinkedHashMap<>();
+        for (Path path : paths) {
+            if (Files.isDirectory(path)) {
+                File[] files = path.toFile().listFiles();
+                Arrays.sort(files);
+                for (File file : files) {
+                    if (file.isFile()) {
+                        readQuery(file.toPath(), queries);
+                    }
+                }
+            } else {
+                readQuery(path, queries);
+            }
+        }
+        return queries;
+    }
+
+    private static void readQuery(Path path, Map<String, String> queries) throws IOException {
+        String name = path.getFileName().toString();
+        if (queries.containsKey(name)) {
+            throw new IOException("More than one query is named " + name);
+        }
+        queries.put(name, new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+    }
+
+    // Results come back in the order the queries were given, whichever finished first
+    private List<Result> runAll(Map<String, Callable<String>> queries) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, queries.size())));
+        try {
+            List<Future<Result>> futures = new ArrayList<>();
+            for (final Map.Entry<String, Callable<String>> query : queries.entrySet()) {
+                futures.add(executor.submit(new Callable<Result>() {
+                    public Result call() {
+                        return runOne(query.getKey(), query.getValue());
+                    }
+                }));
+            }
+            List<Result> results = new ArrayList<>();
+            for (Future<Result> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    // runOne catches what the query throws, so this is an Error
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Result runOne(String name, Callable<String> query) {
+        long start = System.nanoTime();
+        try {
+            String text = query.call();
+            return new Result(name, text, null, false, System.nanoTime() - start);
+        } catch (QueryCancelledException e) {
+            return new Result(name, null, "Timed out", true, System.nanoTime() - start);
+        } catch (Exception e) {
+            return new Result(name, null, String.valueOf(e.getMessage()), false, System.nanoTime() - start);
+        }
+    }
+
+    // The version is the one the handler answers from now, so a reload during the batch is not seen
+    public JsonObject toJson(List<Result> results, long wallNanos) {
+        JsonArray queries = new JsonArray();
+        for (Result result : results) {
+            queries.add(result.toJson());
+        }
+        JsonObject json = new JsonObject();
+        json.put("timestamp", System.currentTimeMillis());
+        json.put("ontologyVersion", handler.getVersion());
+        json.put("wallMillis", JsonNumber.value(wallNanos / 1e6));
+        json.put("queries", queries);
+        return json;
+    }
+
+    // The answer of one query as text, or why it has none
+    public static class Result {
+        private final String name;
+        private final String text;
+        private final String error;
+        private final boolean timedOut;
+        private final long wallNanos;
+
+        Result(String name, String text, String error, boolean timedOut, long wallNanos) {
+            this.name = name;
+            this.text = text;
+            this.error = error;
+            this.timedOut = timedOut;
+            this.wallNanos = wallNanos;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        // null when the query failed
+        public String getText() {
+            return text;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public boolean isSucceeded() {
+            return text != null;
+        }
+
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+
+        // From the query starting to run, not from the batch starting, so next to nothing for a cached answer
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        JsonObject toJson() {
+            JsonObject json = new JsonObject();
+            json.put("name", name);
+            json.put("status", text != null ? "ok" : timedOut ? "timedOut" : "failed");
+            json.put("wallMillis", JsonNumber.value(wallNanos / 1e6));
+            if (error != null) {
+                json.put("error", error);
+            }
+            return json;
+        }
+    }
+}
@@ -1,43 +1,472 @@
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphUtil;
 import org.apache.jena.ontology.OntModel;
 import org.apache.jena.query.*;
+import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
 
-import javax.xml.transform.Result;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
 
 public class QueryHandler {
-    private OntModel ontModel;
-    private String[] sparqlQueries;
+    private static final int AD_HOC_CACHE_SIZE = 64;
+    // -DresultCacheSize=0 turns result caching off, e.g. for benchmarks
+    private static final int RESULT_CACHE_SIZE = Integer.getInteger("resultCacheSize", 256);
+    private static final long RESULT_CACHE_CHARACTERS = 16 * 1024 * 1024;
+    private static final String AD_HOC_METRICS = "ad-hoc";
+    // -DcolumnarRecords=false reads the weather records into an ordinary in-memory graph
+    private static final boolean COLUMNAR_RECORDS = Boolean.parseBoolean(System.getProperty("columnarRecords", "true"));
+
+    private final ReasoningMode reasoning;
+    // Swapped whole by reload, so every query sees one version of the ontology from start to end
+    private volatile Snapshot current;
+    private CompiledQuery[] sparqlQueries;
+    private QueryMetrics[] questionMetrics;
+    private final QueryMetricsRegistry metrics = new QueryMetricsRegistry();
+    private final CompiledQueryCache adHocQueries = new CompiledQueryCache(AD_HOC_CACHE_SIZE);
+    private ResultCache results;
 
     public QueryHandler() throws IOException {
-        ontModel = ModelFactory.createOntologyModel();
-        ontModel.read(OntologyMaker.ONTOLOGY_PATH);
+        this(RESULT_CACHE_SIZE);
+    }
+
+    // resultCacheSize answers are kept, 0 keeps none
+    public QueryHandler(int resultCacheSize) throws IOException {
+        this(ReasoningMode.fromName(System.getProperty("reasoning", ReasoningMode.RDFS.getName())), resultCacheSize);
+    }
+
+    public QueryHandler(ReasoningMode reasoning) throws IOException {
+        this(reasoning, RESULT_CACHE_SIZE);
+    }
+
+    public QueryHandler(ReasoningMode reasoning, int resultCacheSize) throws IOException {
+        this.reasoning = reasoning;
+        current = Snapshot.load(reasoning);
+        results = new ResultCache(resultCacheSize, RESULT_CACHE_CHARACTERS, current.version);
 
         File directory = new File(getClass().getResource("sparql_queries").getFile());
         File[] files = directory.listFiles();
 
         Arrays.sort(files);
-        sparqlQueries = new String[files.length];
+        sparqlQueries = new CompiledQuery[files.length];
+        questionMetrics = new QueryMetrics[files.length];
 
         for (int i = 0; i < files.length; i++) {
-            sparqlQueries[i] = new String(Files.readAllBytes(Paths.get(files[i].getPath())), StandardCharsets.UTF_8);
+            String text = new String(Files.readAllBytes(Paths.get(files[i].getPath())), StandardCharsets.UTF_8);
+            questionMetrics[i] = metrics.get(files[i].getName());
+            long start = System.nanoTime();
+            sparqlQueries[i] = CompiledQuery.compile(text);
+            questionMetrics[i].recordParse(System.nanoTime() - start);
         }
+        writeMetricsOnExit();
 
     }
 
     public String execute(int index)
     {
-        String question = sparqlQueries[index];
-        QueryExecution execution = QueryExecutionFactory.create(question, ontModel);
-        ResultSet resultSet = execution.execSelect();
-        String result = ResultSetFormatter.asText(resultSet);
-        execution.close();
-        return result;
+        return execute(sparqlQueries[index], questionMetrics[index], null);
+    }
+
+    // Runs question index under the task's timeout. Cancelling the task or running past the timeout
+    // makes this throw QueryCancelledException.
+    public String execute(int index, QueryTask task)
+    {
+        return execute(sparqlQueries[index], questionMetrics[index], task);
+    }
+
+    public int getQuestionCount()
+    {
+        return sparqlQueries.length;
+    }
+
+    // The file name of question index in sparql_queries
+    public String getQuestionName(int index)
+    {
+        return questionMetrics[index].getName();
+    }
+
+    // Runs an ad-hoc query, compiling it only the first time its text is seen
+    public String execute(String sparql)
+    {
+        return execute(sparql, null);
+    }
+
+    public String execute(String sparql, QueryTask task)
+    {
+        return execute(compileAdHoc(sparql), metrics.get(AD_HOC_METRICS), task);
+    }
+
+    // Opens question index for reading a page at a time. The caller must close the results.
+    // Paged results bypass the result cache, they are meant for answers too large to hold as text.
+    public PagedResults open(int index, QueryTask task)
+    {
+        return PagedResults.open(acquire(), sparqlQueries[index], questionMetrics[index], task);
+    }
+
+    public PagedResults open(String sparql, QueryTask task)
+    {
+        return PagedResults.open(acquire(), compileAdHoc(sparql), metrics.get(AD_HOC_METRICS), task);
+    }
+
+    // Runs an ad-hoc SELECT or ASK and writes its results in lang, one of the ResultSetLang languages,
+    // as they are read rather than as text held in memory. output is only opened once the first row is
+    // ready, so a query that fails or times out before then can still be answered with an error.
+    // Streamed results bypass the result cache.
+    public void write(String sparql, QueryTask task, Lang lang, ResultsOutput output) throws IOException
+    {
+        CompiledQuery query = compileAdHoc(sparql);
+        if (!query.getQuery().isSelectType() && !query.getQuery().isAskType()) {
+            throw new QueryException("Only SELECT and ASK queries are answered");
+        }
+        QueryMetrics queryMetrics = metrics.get(AD_HOC_METRICS);
+
+        Snapshot snapshot = acquire();
+        snapshot.begin();
+        try {
+            QueryExecution execution = query.createExecution(snapshot.getDataset());
+            try {
+                if (task != null) {
+                    if (task.getTimeoutMillis() > 0) {
+                        execution.setTimeout(task.getTimeoutMillis());
+                    }
+                    task.attach(execution);
+                }
+                CountingGraph.takeCount();
+                long start = System.nanoTime();
+                if (query.getQuery().isAskType()) {
+                    boolean answer = execution.execAsk();
+                    long total = System.nanoTime() - start;
+                    ResultSetFormatter.output(output.open(), answer, lang);
+                    queryMetrics.recordExecution(total, total, 1, snapshot.countsTriples() ? CountingGraph.takeCount() : -1);
+                    return;
+                }
+
+                ResultSet resultSet = execution.execSelect();
+                resultSet.hasNext();
+                long firstRow = System.nanoTime() - start;
+                ResultSetFormatter.output(output.open(), resultSet, lang);
+                queryMetrics.recordExecution(firstRow, System.nanoTime() - start, resultSet.getRowNumber(),
+                        snapshot.countsTriples() ? CountingGraph.takeCount() : -1);
+            } catch (RuntimeException e) {
+                queryMetrics.recordFailure(e instanceof QueryCancelledException);
+                throw e;
+            } finally {
+                execution.close();
+            }
+        } finally {
+            if (task != null) {
+                task.detach();
+            }
+            snapshot.end();
+        }
+    }
+
+    // With -DqueryMetrics=<file> the metrics are written there as JSON when the JVM exits
+    private void writeMetricsOnExit()
+    {
+        final String path = System.getProperty("queryMetrics");
+        if (path == null) {
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            public void run() {
+                try {
+                    writeMetrics(Paths.get(path));
+                } catch (IOException e) {
+                    System.err.println("Could not write query metrics to " + path + ": " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    // Loads the ontology on disk again, such as after OntologyMaker rebuilt it, and switches queries
+    // over to it. Nothing waits for the load: queries already running finish on the data they began
+    // with, and later ones start on the new data once it is ready. The old data is closed once the
+    // last query reading it finishes.
+    public synchronized void reload() throws IOException
+    {
+        Snapshot loaded = Snapshot.load(reasoning);
+        Snapshot old = current;
+        current = loaded;
+        results.setVersion(loaded.version);
+        old.retire();
+        System.out.println("Reloaded ontology version " + loaded.version);
+    }
+
+    // Identifies the data queries are answered from now, it changes with every reload
+    public String getVersion()
+    {
+        return current.version;
+    }
+
+    // Per question metrics, also registered with JMX under ontology:type=QueryMetrics
+    public QueryMetricsRegistry getMetrics()
+    {
+        return metrics;
     }
 
+    public void writeMetrics(Path path) throws IOException
+    {
+        metrics.writeTo(path);
+    }
+
+    // The parse time recorded is what the caller paid, so next to nothing once the text is cached
+    private CompiledQuery compileAdHoc(String sparql)
+    {
+        long start = System.nanoTime();
+        CompiledQuery compiled = adHocQueries.get(sparql);
+        metrics.get(AD_HOC_METRICS).recordParse(System.nanoTime() - start);
+        return compiled;
+    }
+
+    // The current snapshot, acquired for the caller, who must release it. A reload may close the
+    // snapshot read from current before it is acquired, the next one read is then the newer one.
+    private Snapshot acquire()
+    {
+        while (true) {
+            Snapshot snapshot = current;
+            if (snapshot.acquire()) {
+                return snapshot;
+            }
+        }
+    }
+
+    private String execute(CompiledQuery question, QueryMetrics questionMetrics, QueryTask task)
+    {
+        // The loaded ontology never changes, so an answer stays valid for as long as its version does
+        long lookup = System.nanoTime();
+        String cached = results.get(question);
+        if (cached != null) {
+            questionMetrics.recordCacheHit(System.nanoTime() - lookup);
+            return cached;
+        }
+
+        Snapshot snapshot = acquire();
+        snapshot.begin();
+        try {
+            QueryExecution execution = question.createExecution(snapshot.getDataset());
+            try {
+                if (task != null) {
+                    if (task.getTimeoutMillis() > 0) {
+                        execution.setTimeout(task.getTimeoutMillis());
+                    }
+                    task.attach(execution);
+                }
+                CountingGraph.takeCount();
+                long start = System.nanoTime();
+                ResultSet resultSet = execution.execSelect();
+                resultSet.hasNext();
+                long firstRow = System.nanoTime() - start;
+                ResultSetRewindable rows = ResultSetFactory.makeRewindable(resultSet);
+                questionMetrics.recordExecution(firstRow, System.nanoTime() - start, rows.size(),
+                        snapshot.countsTriples() ? CountingGraph.takeCount() : -1);
+
+                String result = ResultSetFormatter.asText(rows);
+                results.put(question, result, snapshot.version);
+                return result;
+            } catch (RuntimeException e) {
+                questionMetrics.recordFailure(e instanceof QueryCancelledException);
+                throw e;
+            } finally {
+                execution.close();
+            }
+        } finally {
+            if (task != null) {
+                task.detach();
+            }
+            snapshot.end();
+        }
+    }
+
+    // Where write sends the results, opened once they are known to be coming
+    public interface ResultsOutput
+    {
+        OutputStream open() throws IOException;
+    }
+
+    // One loaded version of the ontology. Nothing in it changes once it is loaded, so any number of
+    // threads can query it at once, each in a read transaction of its own. A snapshot counts the
+    // queries reading it, and once reload has retired it the last of them closes it.
+    static class Snapshot
+    {
+        private final OntologyStore.Lease store;
+        private final Dataset dataset;
+        private final boolean countsTriples;
+        private final ClimateGridFile gridFile;
+        private final String version;
+        private int readers;
+        private boolean retired;
+        private boolean closed;
+
+        private Snapshot(OntologyStore.Lease store, Dataset dataset, boolean countsTriples, ClimateGridFile gridFile, String version)
+        {
+            this.store = store;
+            this.dataset = dataset;
+            this.countsTriples = countsTriples;
+            this.gridFile = gridFile;
+            this.version = version;
+        }
+
+        static Snapshot load(ReasoningMode reasoning) throws IOException
+        {
+            // The grid file is mapped rather than read, so it costs no heap however large the grids are
+            ClimateGridFile gridFile = null;
+            if (new File(OntologyMaker.GRID_FILE_PATH).isFile()) {
+                gridFile = ClimateGridFile.map(OntologyMaker.GRID_FILE_PATH);
+            }
+
+            // Prefer the TDB2 store written by OntologyMaker, it is opened without reading the data
+            OntologyStore.Lease store = null;
+            String version = OntologyMaker.ontologyVersion();
+            Model model;
+            try {
+                store = OntologyStore.open();
+                if (store != null) {
+                    version += " store-" + store.getName();
+                }
+
+                if (store != null && (reasoning == ReasoningMode.NONE || reasoning == store.getMaterialised())) {
+                    // Queried in place, the build already wrote out what the reasoner would infer
+                    model = null;
+                } else if (store != null) {
+                    // A reasoner tables the goals it has seen and shares them between queries, so it
+                    // cannot read TDB2, whose reads belong to the transaction of a single query
+                    System.out.println("The store holds no " + reasoning.getName() + " inferences, so it is read into memory"
+                            + " for the reasoner. Build with --tdb --materialise " + reasoning.getName()
+                            + " or query with --reasoning none to query the store in place.");
+                    store.getDataset().begin(ReadWrite.READ);
+                    try {
+                        model = copy(store.getDataset().getDefaultModel().getGraph(), gridFile);
+                    } finally {
+                        store.getDataset().end();
+                    }
+                    store.close();
+                    store = null;
+                } else if (COLUMNAR_RECORDS) {
+                    model = MonthlyRecordGraph.loadModel(OntologyMaker.ONTOLOGY_PATH, gridFile);
+                } else {
+                    model = ModelFactory.createDefaultModel();
+                    model.read(OntologyMaker.ONTOLOGY_PATH);
+                }
+            } catch (IOException | RuntimeException e) {
+                if (store != null) {
+                    store.close();
+                }
+                if (gridFile != null) {
+                    gridFile.close();
+                }
+                throw e;
+            }
+
+            // TDB2 answers basic patterns straight from its indexes, so only models can count triples read
+            Dataset dataset;
+            boolean countsTriples = false;
+            if (store != null) {
+                dataset = store.getDataset();
+            } else {
+                OntModel ontModel = ModelFactory.createOntologyModel(reasoning.getSpec(), model);
+                // A reasoner otherwise prepares itself on the first query, which is not safe to race
+                ontModel.prepare();
+                dataset = DatasetFactory.wrap(ModelFactory.createModelForGraph(new CountingGraph(ontModel.getGraph())));
+                countsTriples = true;
+            }
+
+            if (gridFile != null) {
+                dataset.getContext().set(ClimateGridFunction.GRID_FILE, gridFile);
+                version += " grids-" + new File(OntologyMaker.GRID_FILE_PATH).lastModified();
+            }
+            return new Snapshot(store, dataset, countsTriples, gridFile, version);
+        }
+
+        // Reads a store's triples into memory the way the ontology file would have been read
+        private static Model copy(Graph source, ClimateGridFile gridFile)
+        {
+            if (COLUMNAR_RECORDS) {
+                return MonthlyRecordGraph.loadModel(source, gridFile);
+            }
+            Model model = ModelFactory.createDefaultModel();
+            model.getGraph().getPrefixMapping().setNsPrefixes(source.getPrefixMapping());
+            GraphUtil.addInto(model.getGraph(), source);
+            return model;
+        }
+
+        // Counts the caller as a reader, or returns false if the snapshot was already closed
+        synchronized boolean acquire()
+        {
+            if (closed) {
+                return false;
+            }
+            readers++;
+            return true;
+        }
+
+        synchronized void release()
+        {
+            readers--;
+            if (retired && readers == 0) {
+                close();
+            }
+        }
+
+        // Closes the snapshot once no query reads it any more
+        synchronized void retire()
+        {
+            retired = true;
+            if (readers == 0) {
+                close();
+            }
+        }
+
+        private void close()
+        {
+            closed = true;
+            try {
+                if (store != null) {
+                    store.close();
+                }
+            } finally {
+                if (gridFile != null) {
+                    gridFile.close();
+                }
+            }
+        }
+
+        // Begins a read transaction on the calling thread, which must also be the one to end it. The
+        // caller must have acquired the snapshot, and end releases it.
+        void begin()
+        {
+            try {
+                dataset.begin(ReadWrite.READ);
+            } catch (RuntimeException e) {
+                release();
+                throw e;
+            }
+        }
+
+        void end()
+        {
+            try {
+                dataset.end();
+            } finally {
+                release();
+            }
+        }
+
+        Dataset getDataset()
+        {
+            return dataset;
+        }
+
+        boolean countsTriples()
+        {
+            return countsTriples;
+        }
+    }
 }
@@ -0,0 +1,133 @@
+import org.apache.jena.atlas.json.JsonObject;
+
+// Counters and latency histograms for one question file, or for all ad-hoc queries together. Executions
+// and their histograms count the queries that ran, cache hits those answered from the result cache.
+public class QueryMetrics implements QueryMetricsMBean {
+    private final String name;
+    private final LatencyHistogram parse = new LatencyHistogram();
+    private final LatencyHistogram firstRow = new LatencyHistogram();
+    private final LatencyHistogram total = new LatencyHistogram();
+    private final LatencyHistogram cacheHit = new LatencyHistogram();
+    private long executions;
+    private long cacheHits;
+    private long failures;
+    private long cancellations;
+    private long rows;
+    private long triples = -1;
+
+    public QueryMetrics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void recordParse(long nanos) {
+        parse.record(nanos);
+    }
+
+    // totalNanos is -1 when the results were closed before being read to the end, and triples is -1
+    // when they could not be counted
+    public synchronized void recordExecution(long firstRowNanos, long totalNanos, long rowCount, long triplesTouched) {
+        executions++;
+        rows += rowCount;
+        if (triplesTouched >= 0) {
+            triples = Math.max(triples, 0) + triplesTouched;
+        }
+        firstRow.record(firstRowNanos);
+        if (totalNanos >= 0) {
+            total.record(totalNanos);
+        }
+    }
+
+    // nanos is how long the cached answer took to find
+    public synchronized void recordCacheHit(long nanos) {
+        cacheHits++;
+        cacheHit.record(nanos);
+    }
+
+    public synchronized void recordFailure(boolean cancelled) {
+        if (cancelled) {
+            cancellations++;
+        } else {
+            failures++;
+        }
+    }
+
+    public synchronized long getExecutions() {
+        return executions;
+    }
+
+    public synchronized long getCacheHits() {
+        return cacheHits;
+    }
+
+    public double getMeanCacheHitMillis() {
+        return cacheHit.getMeanMillis();
+    }
+
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    public synchronized long getCancellations() {
+        return cancellations;
+    }
+
+    public synchronized long getRowsReturned() {
+        return rows;
+    }
+
+    public synchronized long getTriplesTouched() {
+        return triples;
+    }
+
+    public double getMeanParseMillis() {
+        return parse.getMeanMillis();
+    }
+
+    public double getMeanFirstRowMillis() {
+        return firstRow.getMeanMillis();
+    }
+
+    public double getMeanMillis() {
+        return total.getMeanMillis();
+    }
+
+    public double getP50Millis() {
+        return total.getPercentileMillis(0.50);
+    }
+
+    public double getP95Millis() {
+        return total.getPercentileMillis(0.95);
+    }
+
+    public double getP99Millis() {
+        return total.getPercentileMillis(0.99);
+    }
+
+    public double getMaxMillis() {
+        return total.getMaxMillis();
+    }
+
+    public String getJson() {
+        return toJson().toString();
+    }
+
+    public synchronized JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.put("name", name);
+        json.put("executions", executions);
+        json.put("cacheHits", cacheHits);
+        json.put("failures", failures);
+        json.put("cancellations", cancellations);
+        json.put("rowsReturned", rows);
+        json.put("triplesTouched", triples);
+        json.put("parse", parse.toJson());
+        json.put("firstRow", firstRow.toJson());
+        json.put("total", total.toJson());
+        json.put("cacheHit", cacheHit.toJson());
+        return json;
+    }
+}
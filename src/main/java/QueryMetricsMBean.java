@@ -0,0 +1,34 @@
+// JMX view of the metrics for one question, registered as ontology:type=QueryMetrics,name=<question>
+public interface QueryMetricsMBean {
+    long getExecutions();
+
+    // Answered from the result cache without running, and not counted in the executions
+    long getCacheHits();
+
+    double getMeanCacheHitMillis();
+
+    long getFailures();
+
+    long getCancellations();
+
+    long getRowsReturned();
+
+    // -1 when the dataset cannot count the triples it hands to ARQ
+    long getTriplesTouched();
+
+    double getMeanParseMillis();
+
+    double getMeanFirstRowMillis();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP95Millis();
+
+    double getP99Millis();
+
+    double getMaxMillis();
+
+    String getJson();
+}
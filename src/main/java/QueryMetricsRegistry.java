@@ -0,0 +1,60 @@
+import org.apache.jena.atlas.json.JsonArray;
+import org.apache.jena.atlas.json.JsonObject;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// The QueryMetrics of one QueryHandler, each registered with the platform MBean server
+public class QueryMetricsRegistry {
+    private static final String DOMAIN = "ontology";
+
+    private final Map<String, QueryMetrics> metrics = new LinkedHashMap<>();
+
+    public synchronized QueryMetrics get(String name) {
+        QueryMetrics entry = metrics.get(name);
+        if (entry == null) {
+            entry = new QueryMetrics(name);
+            metrics.put(name, entry);
+            register(entry);
+        }
+        return entry;
+    }
+
+    public synchronized JsonObject toJson() throws IOException {
+        JsonArray queries = new JsonArray();
+        for (QueryMetrics entry : metrics.values()) {
+            queries.add(entry.toJson());
+        }
+        JsonObject json = new JsonObject();
+        json.put("timestamp", System.currentTimeMillis());
+        json.put("ontologyVersion", OntologyMaker.ontologyVersion());
+        json.put("queries", queries);
+        return json;
+    }
+
+    public void writeTo(Path path) throws IOException {
+        Files.write(path, toJson().toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // A newer QueryHandler in the same JVM takes over the names of an older one
+    private void register(QueryMetrics entry) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":type=QueryMetrics,name=" + ObjectName.quote(entry.getName()));
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(entry, name);
+        } catch (JMException e) {
+            System.err.println("Could not register metrics for " + entry.getName() + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,40 @@
+import org.apache.jena.query.QueryCancelledException;
+import org.apache.jena.query.QueryExecution;
+
+// Handle on a query running in QueryHandler, so another thread can abort it
+public class QueryTask {
+    private final long timeoutMillis;
+    private QueryExecution execution;
+    private boolean cancelled;
+
+    // timeoutMillis of 0 or less means the query may run for as long as it needs
+    public QueryTask(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public synchronized void cancel() {
+        cancelled = true;
+        if (execution != null) {
+            execution.abort();
+        }
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    synchronized void attach(QueryExecution execution) {
+        if (cancelled) {
+            throw new QueryCancelledException();
+        }
+        this.execution = execution;
+    }
+
+    synchronized void detach() {
+        execution = null;
+    }
+}
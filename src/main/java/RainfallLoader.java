@@ -0,0 +1,64 @@
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.riot.system.StreamRDF;
+
+import java.io.IOException;
+
+// Emits twelve RainfallRecords for every row of the rainfall grid that falls on, or next to, a
+// station grid square. Rows next to a station square get a new GridSquareLocation of their own,
+// numbered on from the last station grid square.
+public class RainfallLoader implements DatasetLoader {
+    private final String path;
+    private final GridSquareIndex<? extends Resource> gridSquares;
+    private final int firstGridSquareID;
+
+    public RainfallLoader(String path, GridSquareIndex<? extends Resource> gridSquares, int firstGridSquareID) {
+        this.path = path;
+        this.gridSquares = gridSquares;
+        this.firstGridSquareID = firstGridSquareID;
+    }
+
+    public String getName() {
+        return "Rainfall";
+    }
+
+    public long load(StreamRDF output) throws IOException {
+        int rainRecordID = 1;
+        int gridSquareID = firstGridSquareID;
+
+        try (MonthlyGridReader rainfallGrid = new MonthlyGridReader(path)) {
+            while (rainfallGrid.next()) {
+                int aEasting = rainfallGrid.getEasting();
+                int aNorthing = rainfallGrid.getNorthing();
+
+                Node currentLocation;
+                Resource existingLocation = gridSquares.get(aEasting, aNorthing);
+                if (existingLocation != null) {
+                    currentLocation = existingLocation.asNode();
+                } else {
+                    Resource adjacentLocation = gridSquares.findAdjacent(aEasting, aNorthing);
+                    if (adjacentLocation == null) {
+                        continue;
+                    }
+                    currentLocation = OntologyVocabulary.gridSquare(gridSquareID);
+                    gridSquareID++;
+                    output.triple(Triple.create(currentLocation, OntologyVocabulary.TYPE, OntologyVocabulary.GRID_SQUARE_LOCATION));
+                    output.triple(Triple.create(currentLocation, OntologyVocabulary.EASTING, OntologyVocabulary.literal(aEasting)));
+                    output.triple(Triple.create(currentLocation, OntologyVocabulary.NORTHING, OntologyVocabulary.literal(aNorthing)));
+                    output.triple(Triple.create(currentLocation, OntologyVocabulary.ADJACENT_TO, adjacentLocation.asNode()));
+                }
+
+                for (int month = 0; month < OntologyVocabulary.MONTHS.length; month++) {
+                    Node rainfallRecord = OntologyVocabulary.rainRecord(rainRecordID);
+                    rainRecordID++;
+                    output.triple(Triple.create(rainfallRecord, OntologyVocabulary.TYPE, OntologyVocabulary.RAINFALL_RECORD));
+                    output.triple(Triple.create(rainfallRecord, OntologyVocabulary.RAINFALL, OntologyVocabulary.literal(rainfallGrid.getInt(month))));
+                    output.triple(Triple.create(rainfallRecord, OntologyVocabulary.MONTH_HAPPENED, OntologyVocabulary.MONTHS[month]));
+                    output.triple(Triple.create(rainfallRecord, OntologyVocabulary.HAPPENED_AT, currentLocation));
+                }
+            }
+            return rainfallGrid.getRowNumber();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+import org.apache.jena.ontology.OntModelSpec;
+
+// How much inference runs over the ontology. NONE is enough for the shipped questions, and for an
+// ontology built with its inferred closure already written out.
+public enum ReasoningMode {
+    NONE("none", OntModelSpec.OWL_MEM),
+    RDFS("rdfs", OntModelSpec.OWL_MEM_RDFS_INF),
+    OWL_MICRO("owl-micro", OntModelSpec.OWL_MEM_MICRO_RULE_INF);
+
+    private final String name;
+    private final OntModelSpec spec;
+
+    ReasoningMode(String name, OntModelSpec spec) {
+        this.name = name;
+        this.spec = spec;
+    }
+
+    public OntModelSpec getSpec() {
+        return spec;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static ReasoningMode fromName(String name) {
+        for (ReasoningMode mode : values()) {
+            if (mode.name.equalsIgnoreCase(name)) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException("Unknown reasoning mode: " + name);
+    }
+}
@@ -0,0 +1,67 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Formatted query results keyed by (ontology version, normalised query text). Least recently used
+// entries are evicted once either the entry count or the total number of cached characters passes
+// its limit. Entries for any other version than the current one are never returned.
+public class ResultCache {
+    private final int maxEntries;
+    private final long maxCharacters;
+    private final LinkedHashMap<String, String> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private String version;
+    private long characters;
+
+    public ResultCache(int maxEntries, long maxCharacters, String version) {
+        this.maxEntries = maxEntries;
+        this.maxCharacters = maxCharacters;
+        this.version = version;
+    }
+
+    public synchronized String get(CompiledQuery query) {
+        return entries.get(key(query));
+    }
+
+    public synchronized void put(CompiledQuery query, String result) {
+        put(query, result, version);
+    }
+
+    // A result worked out on an older version than the current one is not kept
+    public synchronized void put(CompiledQuery query, String result, String resultVersion) {
+        if (maxEntries == 0 || result.length() > maxCharacters || !resultVersion.equals(version)) {
+            return;
+        }
+        String previous = entries.put(key(query), result);
+        if (previous != null) {
+            characters -= previous.length();
+        }
+        characters += result.length();
+
+        Iterator<Map.Entry<String, String>> eldest = entries.entrySet().iterator();
+        while (entries.size() > maxEntries || characters > maxCharacters) {
+            characters -= eldest.next().getValue().length();
+            eldest.remove();
+        }
+    }
+
+    // Switching to another ontology version drops everything cached for the old one
+    public synchronized void setVersion(String version) {
+        if (!version.equals(this.version)) {
+            this.version = version;
+            entries.clear();
+            characters = 0;
+        }
+    }
+
+    public synchronized String getVersion() {
+        return version;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private String key(CompiledQuery query) {
+        return version + '\n' + query.getKey();
+    }
+}
@@ -0,0 +1,45 @@
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Table model over the pages fetched so far from a PagedResults. JTable only renders the rows in
+// view, so appending a page costs nothing beyond holding its cells.
+public class ResultTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+
+    private List<String> columns = Collections.emptyList();
+    private final List<String[]> rows = new ArrayList<>();
+
+    public void reset(List<String> columns) {
+        this.columns = columns;
+        rows.clear();
+        fireTableStructureChanged();
+    }
+
+    public void append(List<String[]> page) {
+        if (page.isEmpty()) {
+            return;
+        }
+        int first = rows.size();
+        rows.addAll(page);
+        fireTableRowsInserted(first, rows.size() - 1);
+    }
+
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    public int getColumnCount() {
+        return columns.size();
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns.get(column);
+    }
+
+    public Object getValueAt(int row, int column) {
+        return rows.get(row)[column];
+    }
+}
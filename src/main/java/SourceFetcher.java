@@ -0,0 +1,271 @@
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Downloads the source files of the ontology, several at a time. Every download goes to a temporary
+// file next to its target and is only renamed into place once it is complete and its checksum checks
+// out, so a failed or interrupted fetch leaves the previous file untouched. What the server said about
+// each file (ETag, Last-Modified, SHA-256) is kept in a <file>.source file beside it, which lets a
+// refresh ask for the file only if it changed.
+//
+// -DsourceMirror replaces GeoHive and Met Eireann with a mirror, either a base URL or a directory,
+// that serves the files under the names they have in the data directory. A <dataDir>/sources.sha256
+// file in the format of sha256sum pins the exact contents every source must have.
+public class SourceFetcher {
+    public static final String MIRROR = System.getProperty("sourceMirror");
+    private static final int TIMEOUT_MILLIS = Integer.getInteger("fetchTimeout", 60) * 1000;
+    private static final String CHECKSUMS = "sources.sha256";
+
+    private final boolean refresh;
+    private final int threads;
+    private final Map<String, String> expectedChecksums;
+
+    public SourceFetcher(String directory, boolean refresh, int threads) throws IOException {
+        this.refresh = refresh;
+        this.threads = threads;
+        Files.createDirectories(Paths.get(directory));
+        expectedChecksums = readChecksums(Paths.get(directory, CHECKSUMS));
+    }
+
+    // Fetches every source that is missing, fails its pinned checksum or, when refreshing, changed
+    // upstream. Returns the sources whose file was replaced. If any fetch failed this throws once
+    // the others have finished, naming every failure, so no build goes on with a stale or missing file.
+    public List<Source> fetchAll(List<Source> sources) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, sources.size())));
+        try {
+            Map<Source, Future<Boolean>> fetches = new LinkedHashMap<>();
+            for (final Source source : sources) {
+                fetches.put(source, executor.submit(new Callable<Boolean>() {
+                    public Boolean call() throws IOException {
+                        return fetch(source);
+                    }
+                }));
+            }
+
+            List<Source> replaced = new ArrayList<>();
+            IOException failed = null;
+            for (Map.Entry<Source, Future<Boolean>> fetch : fetches.entrySet()) {
+                try {
+                    if (fetch.getValue().get()) {
+                        replaced.add(fetch.getKey());
+                    }
+                } catch (ExecutionException e) {
+                    IOException failure = new IOException("Could not fetch " + fetch.getKey().getPath() + ": " + e.getCause().getMessage(), e.getCause());
+                    if (failed == null) {
+                        failed = failure;
+                    } else {
+                        failed.addSuppressed(failure);
+                    }
+                }
+            }
+            if (failed != null) {
+                throw failed;
+            }
+            return replaced;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while fetching sources", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private boolean fetch(Source source) throws IOException {
+        Path target = source.getPath();
+        Path record = recordPath(target);
+        String expected = expectedChecksums.get(target.getFileName().toString());
+        boolean present = Files.exists(target) || source.hasGridFiles();
+
+        if (present && !refresh) {
+            if (expected == null || !Files.exists(target) || expected.equals(sha256(target))) {
+                return false;
+            }
+            System.out.println(target + " does not match " + CHECKSUMS + ", fetching it again");
+        }
+
+        Properties previous = new Properties();
+        if (Files.exists(target) && Files.exists(record)) {
+            try (InputStream in = Files.newInputStream(record)) {
+                previous.load(in);
+            }
+            // A file that no longer matches what was fetched is fetched in full
+            if (!sha256(target).equals(previous.getProperty("sha256"))) {
+                previous.clear();
+            }
+        }
+
+        URL url = sourceUrl(source);
+        System.out.println("Fetching " + url);
+        URLConnection connection = url.openConnection();
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+        String etag = previous.getProperty("etag");
+        String lastModified = previous.getProperty("lastModified");
+        if (connection instanceof HttpURLConnection) {
+            if (etag != null) {
+                connection.setRequestProperty("If-None-Match", etag);
+            }
+            if (lastModified != null) {
+                connection.setRequestProperty("If-Modified-Since", lastModified);
+            }
+            int status = ((HttpURLConnection) connection).getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                ((HttpURLConnection) connection).disconnect();
+                System.out.println(target + " is up to date");
+                return false;
+            }
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + status + " from " + url);
+            }
+        } else if (lastModified != null && String.valueOf(connection.getLastModified()).equals(lastModified)
+                && String.valueOf(connection.getContentLengthLong()).equals(previous.getProperty("length"))) {
+            // A file: mirror has no validators, its modification time and size stand in for them
+            connection.getInputStream().close();
+            System.out.println(target + " is up to date");
+            return false;
+        }
+
+        Path temporary = Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName().toString(), ".part");
+        try {
+            long length;
+            try (InputStream in = connection.getInputStream()) {
+                length = Files.copy(in, temporary, StandardCopyOption.REPLACE_EXISTING);
+            }
+            long declared = connection.getContentLengthLong();
+            if (declared >= 0 && declared != length) {
+                throw new IOException("Got " + length + " of " + declared + " bytes from " + url);
+            }
+            String checksum = sha256(temporary);
+            if (expected != null && !expected.equals(checksum)) {
+                throw new IOException(url + " has SHA-256 " + checksum + " but " + CHECKSUMS + " expects " + expected);
+            }
+            if (checksum.equals(previous.getProperty("sha256"))) {
+                System.out.println(target + " is unchanged");
+                writeRecord(record, url, connection, checksum, length);
+                return false;
+            }
+
+            moveIntoPlace(temporary, target);
+            writeRecord(record, url, connection, checksum, length);
+            System.out.println("File downloaded and stored in " + target);
+            return true;
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static URL sourceUrl(Source source) throws IOException {
+        if (MIRROR == null || MIRROR.isEmpty()) {
+            return source.getUrl().toURL();
+        }
+        String name = source.getPath().getFileName().toString();
+        if (MIRROR.matches("[a-zA-Z][a-zA-Z0-9+.-]+:.*")) {
+            return new URL(MIRROR.endsWith("/") ? MIRROR + name : MIRROR + "/" + name);
+        }
+        return Paths.get(MIRROR, name).toUri().toURL();
+    }
+
+    private static void writeRecord(Path record, URL url, URLConnection connection, String checksum, long length) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("url", url.toString());
+        properties.setProperty("sha256", checksum);
+        properties.setProperty("length", String.valueOf(length));
+        if (connection instanceof HttpURLConnection) {
+            if (connection.getHeaderField("ETag") != null) {
+                properties.setProperty("etag", connection.getHeaderField("ETag"));
+            }
+            if (connection.getHeaderField("Last-Modified") != null) {
+                properties.setProperty("lastModified", connection.getHeaderField("Last-Modified"));
+            }
+        } else {
+            properties.setProperty("lastModified", String.valueOf(connection.getLastModified()));
+        }
+
+        Path temporary = Files.createTempFile(record.toAbsolutePath().getParent(), record.getFileName().toString(), ".part");
+        try {
+            try (OutputStream out = Files.newOutputStream(temporary)) {
+                properties.store(out, null);
+            }
+            moveIntoPlace(temporary, record);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static void moveIntoPlace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static Path recordPath(Path target) {
+        return target.resolveSibling(target.getFileName() + ".source");
+    }
+
+    private static String sha256(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return DigestUtils.sha256Hex(in);
+        }
+    }
+
+    // "<hex>  <name>" per line, as written by sha256sum
+    private static Map<String, String> readChecksums(Path file) throws IOException {
+        Map<String, String> checksums = new HashMap<>();
+        if (!Files.exists(file)) {
+            return checksums;
+        }
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String[] fields = line.trim().split("\\s+\\*?", 2);
+            if (fields.length == 2 && !line.startsWith("#")) {
+                checksums.put(fields[1], fields[0].toLowerCase());
+            }
+        }
+        return checksums;
+    }
+
+    // A file to fetch. An archive also names the grid files it holds, and is not fetched at all while
+    // the data directory holds those instead, unless refreshing.
+    public static class Source {
+        private final URI url;
+        private final Path path;
+        private final List<Path> gridPaths = new ArrayList<>();
+
+        public Source(String url, String path, String... gridPaths) {
+            this.url = URI.create(url);
+            this.path = Paths.get(path);
+            for (String grid : gridPaths) {
+                this.gridPaths.add(Paths.get(grid));
+            }
+        }
+
+        public URI getUrl() {
+            return url;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public boolean hasGridFiles() {
+            if (gridPaths.isEmpty()) {
+                return false;
+            }
+            for (Path grid : gridPaths) {
+                if (!Files.exists(grid)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,374 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.jena.atlas.RuntimeIOException;
+import org.apache.jena.query.QueryCancelledException;
+import org.apache.jena.query.QueryException;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.resultset.ResultSetLang;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+
+// A SPARQL 1.1 protocol endpoint at /sparql over one shared QueryHandler, so any number of clients
+// can query the loaded ontology without a Window. Queries come as GET ?query=..., as a form POST or
+// as a POST of application/sparql-query, and results go out as JSON, CSV, TSV or XML, chosen by the
+// format parameter or the Accept header, written as they are read. A POST to /reload switches to what
+// the last build left on disk, while queries already running finish on the data they began with.
+//
+// The HTTP dispatcher thread only admits or turns away requests, the server's executor runs admitted
+// ones on the workers. At most maxRequests are admitted at once, the rest get 503 straight away. Of those admitted, at most maxRunning run a query while the
+// others wait their turn for no longer than their timeout. With -DvirtualThreads=true each admitted
+// request gets a virtual thread where the JVM has them.
+public class SparqlServer {
+    public static final String PATH = "/sparql";
+    public static final String RELOAD_PATH = "/reload";
+    private static final boolean VIRTUAL_THREADS = Boolean.getBoolean("virtualThreads");
+    private static final int MAX_QUERY_BYTES = 1 << 20;
+    private static final int BUFFER_SIZE = 1 << 16;
+    // Set on a worker for the exchange it runs, and on the dispatcher for one it turns away
+    private static final ThreadLocal<Long> ADMITTED_AT = new ThreadLocal<>();
+    private static final ThreadLocal<String> TURNED_AWAY = new ThreadLocal<>();
+
+    private final QueryHandler handler;
+    private final HttpServer server;
+    private final ExecutorService workers;
+    private final Semaphore admitted;
+    private final Semaphore running;
+    private final long timeoutMillis;
+
+    // timeoutMillis bounds every request, including its wait to run, and clients may only ask for less
+    public SparqlServer(QueryHandler handler, InetSocketAddress address, int maxRunning, int maxRequests, long timeoutMillis) throws IOException {
+        this.handler = handler;
+        this.timeoutMillis = timeoutMillis;
+        admitted = new Semaphore(maxRequests);
+        running = new Semaphore(maxRunning);
+        workers = createWorkers(maxRequests);
+        server = HttpServer.create(address, maxRequests);
+        server.setExecutor(new Executor() {
+            public void execute(Runnable exchange) {
+                admit(exchange);
+            }
+        });
+        server.createContext(PATH, new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                if (turnedAway(exchange)) {
+                    return;
+                }
+                serve(exchange, ADMITTED_AT.get());
+                exchange.close();
+            }
+        });
+        server.createContext(RELOAD_PATH, new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                if (turnedAway(exchange)) {
+                    return;
+                }
+                if (!exchange.getRequestMethod().equals("POST")) {
+                    exchange.getResponseHeaders().set("Allow", "POST");
+                    sendError(exchange, 405, "Use POST");
+                } else {
+                    reload(exchange);
+                }
+                exchange.close();
+            }
+        });
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("SPARQL endpoint at http://" + server.getAddress().getHostString() + ":"
+                + server.getAddress().getPort() + PATH);
+    }
+
+    // Gives running requests up to delaySeconds to finish
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        workers.shutdownNow();
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    private static ExecutorService createWorkers(int threads) {
+        if (VIRTUAL_THREADS) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                System.out.println("Virtual threads are not available, using " + threads + " worker threads");
+            }
+        }
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int count;
+
+            public synchronized Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "sparql-worker-" + ++count);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    // Runs an exchange on a worker, where its handler reads the request and answers it. An exchange
+    // that is not admitted runs here on the dispatcher thread instead, where its handler only turns
+    // it away.
+    private void admit(final Runnable exchange) {
+        if (!admitted.tryAcquire()) {
+            TURNED_AWAY.set("Too many requests, try again later");
+            try {
+                exchange.run();
+            } finally {
+                TURNED_AWAY.remove();
+            }
+            return;
+        }
+        final long admittedAt = System.nanoTime();
+        try {
+            workers.execute(new Runnable() {
+                public void run() {
+                    ADMITTED_AT.set(admittedAt);
+                    try {
+                        exchange.run();
+                    } finally {
+                        ADMITTED_AT.remove();
+                        admitted.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            admitted.release();
+            TURNED_AWAY.set("The server is shutting down");
+            try {
+                exchange.run();
+            } finally {
+                TURNED_AWAY.remove();
+            }
+        }
+    }
+
+    // Answers 503 to an exchange admit did not admit
+    private static boolean turnedAway(HttpExchange exchange) throws IOException {
+        String reason = TURNED_AWAY.get();
+        if (reason == null) {
+            return false;
+        }
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        sendError(exchange, 503, reason);
+        exchange.close();
+        return true;
+    }
+
+    private void serve(final HttpExchange exchange, long admittedAt) throws IOException {
+        Map<String, String> parameters;
+        try {
+            parameters = readParameters(exchange);
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+            return;
+        }
+        if (parameters == null) {
+            exchange.getResponseHeaders().set("Allow", "GET, POST");
+            sendError(exchange, 405, "Use GET or POST");
+            return;
+        }
+        String query = parameters.get("query");
+        if (query == null || query.trim().isEmpty()) {
+            sendError(exchange, 400, "No query given");
+            return;
+        }
+        final Lang lang = resultsLang(parameters.get("format"), exchange.getRequestHeaders().getFirst("Accept"));
+        if (lang == null) {
+            sendError(exchange, 406, "Results are available as JSON, CSV, TSV or XML");
+            return;
+        }
+
+        long timeout = timeoutMillis;
+        try {
+            if (parameters.containsKey("timeout")) {
+                long requested = (long) (Double.parseDouble(parameters.get("timeout")) * 1000);
+                if (requested > 0 && (timeout <= 0 || requested < timeout)) {
+                    timeout = requested;
+                }
+            }
+        } catch (NumberFormatException e) {
+            sendError(exchange, 400, "The timeout is a number of seconds");
+            return;
+        }
+
+        // The wait to run counts towards the timeout
+        long deadline = admittedAt / 1000000 + timeout;
+        try {
+            if (timeout <= 0) {
+                running.acquire();
+            } else if (!running.tryAcquire(deadline - System.nanoTime() / 1000000, TimeUnit.MILLISECONDS)) {
+                sendError(exchange, 503, "Timed out waiting to run");
+                return;
+            }
+        } catch (InterruptedException e) {
+            sendError(exchange, 503, "The server is shutting down");
+            return;
+        }
+
+        // Only set once the results start going out, after which the status cannot change
+        final OutputStream[] body = new OutputStream[1];
+        try {
+            long left = timeout > 0 ? Math.max(1, deadline - System.nanoTime() / 1000000) : 0;
+            handler.write(query, new QueryTask(left), lang, new QueryHandler.ResultsOutput() {
+                public OutputStream open() throws IOException {
+                    exchange.getResponseHeaders().set("Content-Type", lang.getContentType().getContentType() + "; charset=utf-8");
+                    exchange.sendResponseHeaders(200, 0);
+                    body[0] = new BufferedOutputStream(exchange.getResponseBody(), BUFFER_SIZE);
+                    return body[0];
+                }
+            });
+        } catch (RuntimeIOException e) {
+            // Writing the results failed, so the client has gone
+            throw new IOException("The client went away", e);
+        } catch (QueryCancelledException e) {
+            fail(exchange, body[0], 503, "Timed out");
+        } catch (QueryException e) {
+            fail(exchange, body[0], 400, e.getMessage());
+        } catch (RuntimeException e) {
+            System.out.println("Query failed: " + e);
+            fail(exchange, body[0], 500, String.valueOf(e));
+        } finally {
+            running.release();
+        }
+        if (body[0] != null) {
+            body[0].close();
+        }
+    }
+
+    private void reload(HttpExchange exchange) throws IOException {
+        try {
+            handler.reload();
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Reload failed: " + e);
+            sendError(exchange, 500, "Reload failed: " + e.getMessage());
+            return;
+        }
+        sendText(exchange, 200, "Reloaded ontology version " + handler.getVersion());
+    }
+
+    // Once results have started going out the status cannot change, so the response is cut short
+    // instead: throwing from the handler makes the HTTP server drop the connection without ending the
+    // chunked body, and the client sees a broken response rather than a well formed partial one.
+    private static void fail(HttpExchange exchange, OutputStream body, int status, String message) throws IOException {
+        if (body == null) {
+            sendError(exchange, status, message);
+            return;
+        }
+        throw new IOException("Results cut short: " + message);
+    }
+
+    // The query string and, for a POST, the body. null for any other method.
+    private static Map<String, String> readParameters(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = new HashMap<>();
+        parseForm(exchange.getRequestURI().getRawQuery(), parameters);
+
+        String method = exchange.getRequestMethod();
+        if (method.equals("GET")) {
+            return parameters;
+        }
+        if (!method.equals("POST")) {
+            return null;
+        }
+
+        String body = readBody(exchange.getRequestBody());
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        contentType = contentType == null ? "" : contentType.split(";")[0].trim().toLowerCase();
+        if (contentType.equals("application/sparql-query")) {
+            parameters.put("query", body);
+        } else if (contentType.equals("application/x-www-form-urlencoded")) {
+            parseForm(body, parameters);
+        } else {
+            throw new IllegalArgumentException("POST a query as application/sparql-query or application/x-www-form-urlencoded");
+        }
+        return parameters;
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            body.write(buffer, 0, read);
+            if (body.size() > MAX_QUERY_BYTES) {
+                throw new IllegalArgumentException("The request is larger than " + MAX_QUERY_BYTES + " bytes");
+            }
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void parseForm(String form, Map<String, String> parameters) throws UnsupportedEncodingException {
+        if (form == null || form.isEmpty()) {
+            return;
+        }
+        for (String pair : form.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), "UTF-8");
+            String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), "UTF-8");
+            parameters.put(name, value);
+        }
+    }
+
+    // format wins over Accept, whose types are tried in the order given. JSON when neither says.
+    private static Lang resultsLang(String format, String accept) {
+        if (format != null) {
+            return langFor(format.toLowerCase());
+        }
+        if (accept == null || accept.trim().isEmpty()) {
+            return ResultSetLang.SPARQLResultSetJSON;
+        }
+        for (String range : accept.split(",")) {
+            Lang lang = langFor(range.split(";")[0].trim().toLowerCase());
+            if (lang != null) {
+                return lang;
+            }
+        }
+        return null;
+    }
+
+    // A results language by format name or media type, null for any other
+    static Lang langFor(String type) {
+        switch (type) {
+            case "json":
+            case "application/sparql-results+json":
+            case "application/json":
+            case "application/*":
+            case "*/*":
+                return ResultSetLang.SPARQLResultSetJSON;
+            case "csv":
+            case "text/csv":
+                return ResultSetLang.SPARQLResultSetCSV;
+            case "tsv":
+            case "text/tab-separated-values":
+                return ResultSetLang.SPARQLResultSetTSV;
+            case "xml":
+            case "application/sparql-results+xml":
+            case "application/xml":
+                return ResultSetLang.SPARQLResultSetXML;
+            default:
+                return null;
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        sendText(exchange, status, message);
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.engine.iterator.QueryIterNullIterator;
+import org.apache.jena.sparql.engine.iterator.QueryIterPlainWrapper;
+import org.apache.jena.sparql.engine.iterator.QueryIterSingleton;
+import org.apache.jena.sparql.pfunction.PFuncSimple;
+import org.apache.jena.sparql.pfunction.PropertyFunction;
+import org.apache.jena.sparql.pfunction.PropertyFunctionFactory;
+import org.apache.jena.sparql.pfunction.PropertyFunctionRegistry;
+import org.apache.jena.sparql.util.Symbol;
+import org.apache.jena.util.iterator.ExtendedIterator;
+
+import java.util.*;
+
+// Answers base:higherThan and base:lowerThan from the station heights while a query runs, instead
+// of the ontology holding a triple for every pair of stations. The first time a query uses either
+// property the stations are sorted by height, after which each station's higher or lower stations
+// are a range of that order.
+public class StationHeightFunction extends PFuncSimple {
+    private static final Symbol HEIGHTS = Symbol.create(OntologyVocabulary.NAMESPACE + "stationHeights");
+
+    private final boolean higher;
+
+    private StationHeightFunction(boolean higher) {
+        this.higher = higher;
+    }
+
+    // Must run before the queries using the properties are optimised
+    public static void register() {
+        PropertyFunctionRegistry registry = PropertyFunctionRegistry.get();
+        registry.put(OntologyVocabulary.HIGHER_THAN.getURI(), new PropertyFunctionFactory() {
+            public PropertyFunction create(String uri) {
+                return new StationHeightFunction(true);
+            }
+        });
+        registry.put(OntologyVocabulary.LOWER_THAN.getURI(), new PropertyFunctionFactory() {
+            public PropertyFunction create(String uri) {
+                return new StationHeightFunction(false);
+            }
+        });
+    }
+
+    public QueryIterator execEvaluated(Binding binding, Node subject, Node predicate, Node object, ExecutionContext execCxt) {
+        Heights heights = heights(execCxt);
+
+        if (!subject.isVariable()) {
+            Long height = heights.get(subject);
+            if (height == null) {
+                return QueryIterNullIterator.create(execCxt);
+            }
+            if (!object.isVariable()) {
+                Long other = heights.get(object);
+                boolean holds = other != null && (higher ? height > other : height < other);
+                return holds ? QueryIterSingleton.create(binding, execCxt) : QueryIterNullIterator.create(execCxt);
+            }
+            return bindAll(binding, Var.alloc(object), higher ? heights.below(height) : heights.above(height), execCxt);
+        }
+
+        if (!object.isVariable()) {
+            Long height = heights.get(object);
+            if (height == null) {
+                return QueryIterNullIterator.create(execCxt);
+            }
+            return bindAll(binding, Var.alloc(subject), higher ? heights.above(height) : heights.below(height), execCxt);
+        }
+
+        if (subject.equals(object)) {
+            return QueryIterNullIterator.create(execCxt);
+        }
+        return new QueryIterPlainWrapper(new Pairs(binding, Var.alloc(subject), Var.alloc(object), heights), execCxt);
+    }
+
+    private static QueryIterator bindAll(Binding binding, Var var, List<Node> stations, ExecutionContext execCxt) {
+        List<Binding> bindings = new ArrayList<>(stations.size());
+        for (Node station : stations) {
+            bindings.add(BindingFactory.binding(binding, var, station));
+        }
+        return new QueryIterPlainWrapper(bindings.iterator(), execCxt);
+    }
+
+    // Built once per query execution, so it always reflects the data the query runs against
+    private static Heights heights(ExecutionContext execCxt) {
+        synchronized (execCxt.getContext()) {
+            Heights heights = (Heights) execCxt.getContext().get(HEIGHTS);
+            if (heights == null) {
+                heights = new Heights(execCxt.getActiveGraph());
+                execCxt.getContext().set(HEIGHTS, heights);
+            }
+            return heights;
+        }
+    }
+
+    // Every subject with a numeric height, in ascending order of height
+    private static class Heights {
+        private final Node[] stations;
+        private final long[] sorted;
+        private final Map<Node, Long> byStation = new HashMap<>();
+
+        Heights(Graph graph) {
+            ExtendedIterator<Triple> triples = graph.find(Node.ANY, OntologyVocabulary.HEIGHT, Node.ANY);
+            try {
+                while (triples.hasNext()) {
+                    Triple triple = triples.next();
+                    Node value = triple.getObject();
+                    if (value.isLiteral() && value.getLiteralValue() instanceof Number) {
+                        byStation.put(triple.getSubject(), ((Number) value.getLiteralValue()).longValue());
+                    }
+                }
+            } finally {
+                triples.close();
+            }
+
+            List<Map.Entry<Node, Long>> entries = new ArrayList<>(byStation.entrySet());
+            Collections.sort(entries, new Comparator<Map.Entry<Node, Long>>() {
+                public int compare(Map.Entry<Node, Long> a, Map.Entry<Node, Long> b) {
+                    return Long.compare(a.getValue(), b.getValue());
+                }
+            });
+            stations = new Node[entries.size()];
+            sorted = new long[entries.size()];
+            for (int i = 0; i < entries.size(); i++) {
+                stations[i] = entries.get(i).getKey();
+                sorted[i] = entries.get(i).getValue();
+            }
+        }
+
+        Long get(Node station) {
+            return byStation.get(station);
+        }
+
+        List<Node> below(long height) {
+            return Arrays.asList(stations).subList(0, firstAtLeast(height));
+        }
+
+        List<Node> above(long height) {
+            return Arrays.asList(stations).subList(firstAtLeast(height + 1), stations.length);
+        }
+
+        int size() {
+            return stations.length;
+        }
+
+        Node station(int index) {
+            return stations[index];
+        }
+
+        private int firstAtLeast(long height) {
+            int low = 0;
+            int high = sorted.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (sorted[middle] < height) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    // Every (higher, lower) station pair, or (lower, higher) for lowerThan, produced as it is read
+    // rather than all at once
+    private class Pairs implements Iterator<Binding> {
+        private final Binding binding;
+        private final Var subject;
+        private final Var object;
+        private final Heights heights;
+        private int station = -1;
+        private List<Node> others = Collections.emptyList();
+        private int other;
+
+        Pairs(Binding binding, Var subject, Var object, Heights heights) {
+            this.binding = binding;
+            this.subject = subject;
+            this.object = object;
+            this.heights = heights;
+        }
+
+        public boolean hasNext() {
+            while (other >= others.size()) {
+                station++;
+                if (station >= heights.size()) {
+                    return false;
+                }
+                long height = heights.get(heights.station(station));
+                others = higher ? heights.below(height) : heights.above(height);
+                other = 0;
+            }
+            return true;
+        }
+
+        public Binding next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Node otherStation = others.get(other++);
+            return BindingFactory.binding(BindingFactory.binding(binding, subject, heights.station(station)), object, otherStation);
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
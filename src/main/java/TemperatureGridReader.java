@@ -0,0 +1,117 @@
+import java.io.Closeable;
+import java.io.IOException;
+
+// Walks the maximum, minimum and mean temperature grids together, one row of each at a time.
+// The three files must list the same grid squares in the same order; any row whose
+// (easting, northing) differs between them, or a file ending early, is reported as an error.
+public class TemperatureGridReader implements Closeable {
+    private final MonthlyGridReader max;
+    private final MonthlyGridReader min;
+    private final MonthlyGridReader mean;
+    private int easting;
+    private int northing;
+
+    public TemperatureGridReader(MonthlyGridReader max, MonthlyGridReader min, MonthlyGridReader mean) {
+        this.max = max;
+        this.min = min;
+        this.mean = mean;
+    }
+
+    public TemperatureGridReader(String maxPath, String minPath, String meanPath) throws IOException {
+        this(open(maxPath, minPath, meanPath));
+    }
+
+    private TemperatureGridReader(MonthlyGridReader[] grids) {
+        this(grids[0], grids[1], grids[2]);
+    }
+
+    // Closes the grids already open if a later one cannot be opened
+    private static MonthlyGridReader[] open(String... paths) throws IOException {
+        MonthlyGridReader[] grids = new MonthlyGridReader[paths.length];
+        try {
+            for (int i = 0; i < paths.length; i++) {
+                grids[i] = new MonthlyGridReader(paths[i]);
+            }
+            return grids;
+        } catch (IOException | RuntimeException e) {
+            for (MonthlyGridReader grid : grids) {
+                if (grid != null) {
+                    try {
+                        grid.close();
+                    } catch (IOException suppressed) {
+                        e.addSuppressed(suppressed);
+                    }
+                }
+            }
+            throw e;
+        }
+    }
+
+    public boolean next() throws IOException {
+        boolean hasMax = max.next();
+        boolean hasMin = min.next();
+        boolean hasMean = mean.next();
+
+        if (!hasMax && !hasMin && !hasMean) {
+            return false;
+        }
+        if (!hasMax || !hasMin || !hasMean) {
+            throw new IOException("Temperature grids have different row counts: " + describe(max, hasMax) + ", "
+                    + describe(min, hasMin) + ", " + describe(mean, hasMean));
+        }
+
+        easting = max.getEasting();
+        northing = max.getNorthing();
+        checkAligned(min);
+        checkAligned(mean);
+        return true;
+    }
+
+    public int getEasting() {
+        return easting;
+    }
+
+    public int getNorthing() {
+        return northing;
+    }
+
+    public long getRowNumber() {
+        return max.getRowNumber();
+    }
+
+    public float getMax(int month) {
+        return max.getFloat(month);
+    }
+
+    public float getMin(int month) {
+        return min.getFloat(month);
+    }
+
+    public float getMean(int month) {
+        return mean.getFloat(month);
+    }
+
+    public void close() throws IOException {
+        try {
+            max.close();
+        } finally {
+            try {
+                min.close();
+            } finally {
+                mean.close();
+            }
+        }
+    }
+
+    private void checkAligned(MonthlyGridReader grid) throws IOException {
+        if (grid.getEasting() != easting || grid.getNorthing() != northing) {
+            throw new IOException("Temperature grids are misaligned at row " + max.getRowNumber() + ": "
+                    + max.getSource() + " has (" + easting + ", " + northing + ") but " + grid.getSource()
+                    + " has (" + grid.getEasting() + ", " + grid.getNorthing() + ")");
+        }
+    }
+
+    private static String describe(MonthlyGridReader grid, boolean hasRow) {
+        return grid.getSource() + (hasRow ? " continues" : " ended");
+    }
+}
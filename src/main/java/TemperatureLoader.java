@@ -0,0 +1,54 @@
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.riot.system.StreamRDF;
+
+import java.io.IOException;
+
+// Emits twelve TemperatureRecords for every row of the temperature grids that falls exactly on a
+// station grid square.
+public class TemperatureLoader implements DatasetLoader {
+    private final String maxPath;
+    private final String minPath;
+    private final String meanPath;
+    private final GridSquareIndex<? extends Resource> gridSquares;
+
+    public TemperatureLoader(String maxPath, String minPath, String meanPath, GridSquareIndex<? extends Resource> gridSquares) {
+        this.maxPath = maxPath;
+        this.minPath = minPath;
+        this.meanPath = meanPath;
+        this.gridSquares = gridSquares;
+    }
+
+    public String getName() {
+        return "Temperature";
+    }
+
+    public long load(StreamRDF output) throws IOException {
+        int tempRecordID = 1;
+        long rows = 0;
+
+        try (TemperatureGridReader temperatures = new TemperatureGridReader(maxPath, minPath, meanPath)) {
+            while (temperatures.next()) {
+                rows++;
+                Resource currentLocation = gridSquares.get(temperatures.getEasting(), temperatures.getNorthing());
+                if (currentLocation == null) {
+                    continue;
+                }
+
+                Node location = currentLocation.asNode();
+                for (int month = 0; month < OntologyVocabulary.MONTHS.length; month++) {
+                    Node temperatureRecord = OntologyVocabulary.temperatureRecord(tempRecordID);
+                    tempRecordID++;
+                    output.triple(Triple.create(temperatureRecord, OntologyVocabulary.TYPE, OntologyVocabulary.TEMPERATURE_RECORD));
+                    output.triple(Triple.create(temperatureRecord, OntologyVocabulary.TEMPERATURE_MAX, OntologyVocabulary.literal(temperatures.getMax(month))));
+                    output.triple(Triple.create(temperatureRecord, OntologyVocabulary.TEMPERATURE_MEAN, OntologyVocabulary.literal(temperatures.getMean(month))));
+                    output.triple(Triple.create(temperatureRecord, OntologyVocabulary.TEMPERATURE_MIN, OntologyVocabulary.literal(temperatures.getMin(month))));
+                    output.triple(Triple.create(temperatureRecord, OntologyVocabulary.HAPPENED_AT, location));
+                    output.triple(Triple.create(temperatureRecord, OntologyVocabulary.MONTH_HAPPENED, OntologyVocabulary.MONTHS[month]));
+                }
+            }
+        }
+        return rows;
+    }
+}
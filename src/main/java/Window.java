@@ -1,3 +1,5 @@
+import org.apache.jena.query.QueryCancelledException;
+
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
@@ -9,15 +11,34 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 
 public class Window extends JFrame{
+    private static final int DEFAULT_TIMEOUT_SECONDS = Integer.getInteger("queryTimeout", 60);
+    private static final int PAGE_SIZE = 500;
+
     private String[] questions;
     private QueryHandler handler;
+    private QueryTask runningQuery;
+    private PagedResults results;
+    private QueryTask resultsTask;
+
+    private JButton executeButton;
+    private JButton cancelButton;
+    private JButton fetchMoreButton;
+    private JSpinner timeoutSpinner;
+    private JProgressBar progressBar;
+    private JLabel statusLabel;
+    private JLabel rowCountLabel;
+    private ResultTableModel resultModel;
+    private JList questionList;
 
     public Window() throws IOException {
         prepareGUI();
-        handler = new QueryHandler();
+        loadHandler();
     }
 
     public void launchWindow() {
@@ -30,7 +51,7 @@ public class Window extends JFrame{
         int windowHeight = 600;
         int margin = 20;
 
-        final JList questionList = new JList(getQuestions());
+        questionList = new JList(getQuestions());
         questionList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         questionList.setVisibleRowCount(0);
         questionList.setSelectedIndex(0);
@@ -42,27 +63,71 @@ public class Window extends JFrame{
         scrollPane.setViewportView(questionList);
         scrollPane.setSize(windowWidth - margin * 4 - 100, 200);
 
-        JButton button = new JButton("Execute");
-        button.setSize(100, 50);
-        button.setAlignmentX(Component.CENTER_ALIGNMENT);
+        executeButton = new JButton("Execute");
+        executeButton.setEnabled(false);
+
+        cancelButton = new JButton("Cancel");
+        cancelButton.setEnabled(false);
+
+        timeoutSpinner = new JSpinner(new SpinnerNumberModel(DEFAULT_TIMEOUT_SECONDS, 0, 3600, 5));
+        timeoutSpinner.setToolTipText("Seconds a query may run for, 0 for no limit");
+
+        progressBar = new JProgressBar();
+        progressBar.setIndeterminate(true);
+
+        statusLabel = new JLabel("Loading ontology...");
 
-        final JTextArea resultTextArea = new JTextArea();
-        resultTextArea.setEditable(false);
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        controls.add(executeButton);
+        controls.add(cancelButton);
+        controls.add(new JLabel("Timeout (s)"));
+        controls.add(timeoutSpinner);
+        controls.add(progressBar);
+        controls.add(statusLabel);
+        controls.setMaximumSize(new Dimension(windowWidth, 40));
+
+        resultModel = new ResultTableModel();
+        JTable resultTable = new JTable(resultModel);
+        resultTable.setFillsViewportHeight(true);
         JScrollPane resultPane = new JScrollPane();
-        resultPane.setViewportView(resultTextArea);
+        resultPane.setViewportView(resultTable);
         resultPane.setSize(windowWidth - margin * 2, windowHeight - 200 - margin * 4);
 
-        button.addActionListener(new ActionListener() {
+        fetchMoreButton = new JButton("Fetch more");
+        fetchMoreButton.setEnabled(false);
+
+        rowCountLabel = new JLabel(" ");
+
+        JPanel paging = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        paging.add(rowCountLabel);
+        paging.add(fetchMoreButton);
+        paging.setMaximumSize(new Dimension(windowWidth, 40));
+
+        executeButton.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
-                int index = questionList.getSelectedIndex();
-                String result = handler.execute(index);
-                resultTextArea.setText(result);
+                executeSelected();
+            }
+        });
+
+        fetchMoreButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                fetchMore();
+            }
+        });
+
+        cancelButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                if (runningQuery != null) {
+                    runningQuery.cancel();
+                    statusLabel.setText("Cancelling...");
+                }
             }
         });
 
         panel.add(scrollPane);
-        panel.add(button);
+        panel.add(controls);
         panel.add(resultPane);
+        panel.add(paging);
 
         this.setTitle("Testing");
         this.setBounds(100, 100, windowWidth, windowHeight);
@@ -72,6 +137,157 @@ public class Window extends JFrame{
         this.setVisible(false);
     }
 
+    // The ontology is loaded off the event dispatch thread, so the window is usable straight away
+    private void loadHandler() {
+        new SwingWorker<QueryHandler, Void>() {
+            @Override
+            protected QueryHandler doInBackground() throws Exception {
+                return new QueryHandler();
+            }
+
+            @Override
+            protected void done() {
+                progressBar.setIndeterminate(false);
+                try {
+                    handler = get();
+                    executeButton.setEnabled(true);
+                    statusLabel.setText("Ready");
+                } catch (InterruptedException e) {
+                    statusLabel.setText("Loading interrupted");
+                } catch (ExecutionException e) {
+                    showFailure("Failed to load ontology", e.getCause());
+                }
+            }
+        }.execute();
+    }
+
+    private void executeSelected() {
+        final int index = questionList.getSelectedIndex();
+        if (index < 0) {
+            return;
+        }
+
+        final int timeoutSeconds = (Integer) timeoutSpinner.getValue();
+        final QueryTask task = new QueryTask(timeoutSeconds * 1000L);
+        final PagedResults previous = results;
+        results = null;
+        resultModel.reset(Collections.<String>emptyList());
+        startRunning(task, "Running question " + (index + 1) + "...");
+
+        // Only the first page is read before the rows are shown, the rest are fetched on demand
+        new SwingWorker<List<String[]>, Void>() {
+            private PagedResults opened;
+
+            @Override
+            protected List<String[]> doInBackground() {
+                if (previous != null) {
+                    previous.close();
+                }
+                opened = handler.open(index, task);
+                return opened.fetch(PAGE_SIZE);
+            }
+
+            @Override
+            protected void done() {
+                stopRunning();
+                try {
+                    List<String[]> page = get();
+                    results = opened;
+                    resultsTask = task;
+                    resultModel.reset(opened.getColumns());
+                    resultModel.append(page);
+                    statusLabel.setText("Ready");
+                } catch (InterruptedException e) {
+                    statusLabel.setText("Interrupted");
+                } catch (ExecutionException e) {
+                    if (opened != null) {
+                        opened.close();
+                    }
+                    showQueryFailure(task, timeoutSeconds, e.getCause());
+                }
+                updatePaging();
+            }
+        }.execute();
+    }
+
+    private void fetchMore() {
+        final PagedResults current = results;
+        if (current == null || current.isExhausted()) {
+            return;
+        }
+
+        // The task stays attached to the open execution, so Cancel also stops a slow page
+        final QueryTask task = resultsTask;
+        startRunning(task, "Fetching more rows...");
+
+        new SwingWorker<List<String[]>, Void>() {
+            @Override
+            protected List<String[]> doInBackground() {
+                return current.fetch(PAGE_SIZE);
+            }
+
+            @Override
+            protected void done() {
+                stopRunning();
+                try {
+                    resultModel.append(get());
+                    statusLabel.setText("Ready");
+                } catch (InterruptedException e) {
+                    statusLabel.setText("Interrupted");
+                } catch (ExecutionException e) {
+                    current.close();
+                    results = null;
+                    // The timeout the spinner gave the results when they were opened
+                    showQueryFailure(task, (int) (task.getTimeoutMillis() / 1000), e.getCause());
+                }
+                updatePaging();
+            }
+        }.execute();
+    }
+
+    private void startRunning(QueryTask task, String status) {
+        runningQuery = task;
+        executeButton.setEnabled(false);
+        fetchMoreButton.setEnabled(false);
+        cancelButton.setEnabled(true);
+        progressBar.setIndeterminate(true);
+        statusLabel.setText(status);
+        statusLabel.setToolTipText(null);
+    }
+
+    private void stopRunning() {
+        runningQuery = null;
+        executeButton.setEnabled(true);
+        cancelButton.setEnabled(false);
+        progressBar.setIndeterminate(false);
+    }
+
+    private void updatePaging() {
+        if (results == null) {
+            rowCountLabel.setText(" ");
+            fetchMoreButton.setEnabled(false);
+        } else if (results.isExhausted()) {
+            rowCountLabel.setText(results.getRowCount() + " rows");
+            fetchMoreButton.setEnabled(false);
+        } else {
+            rowCountLabel.setText("First " + results.getRowCount() + " rows, more available");
+            fetchMoreButton.setEnabled(true);
+        }
+    }
+
+    private void showQueryFailure(QueryTask task, int timeoutSeconds, Throwable cause) {
+        if (cause instanceof QueryCancelledException) {
+            statusLabel.setText(task.isCancelled() ? "Query cancelled" : "Query timed out after " + timeoutSeconds + "s");
+        } else {
+            showFailure("Query failed", cause);
+        }
+    }
+
+    private void showFailure(String status, Throwable cause) {
+        statusLabel.setText(status);
+        statusLabel.setToolTipText(String.valueOf(cause));
+    }
+
     private String[] getQuestions() throws IOException
     {
         File directory = new File(getClass().getResource("questions").getFile());
@@ -0,0 +1,138 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class ClimateGridFileTest {
+    private static final String HEADER = "east,north,m1,m2,m3,m4,m5,m6,m7,m8,m9,m10,m11,m12\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void findsEverySquareOfEitherGrid() throws IOException {
+        ClimateGridFile grids = write(new int[][]{{0, 0}, {0, 2000}, {1000, 0}, {3000, -5000}},
+                new int[][]{{0, 0}, {0, 1000}, {1000, 0}});
+        try {
+            // Sorted by easting then northing across both grids
+            assertEquals(5, grids.getRowCount());
+            int[][] squares = {{0, 0}, {0, 1000}, {0, 2000}, {1000, 0}, {3000, -5000}};
+            for (int row = 0; row < squares.length; row++) {
+                assertEquals(row, grids.find(squares[row][0], squares[row][1]));
+                assertEquals(squares[row][0], grids.getEasting(row));
+                assertEquals(squares[row][1], grids.getNorthing(row));
+            }
+        } finally {
+            grids.close();
+        }
+    }
+
+    @Test
+    public void squaresNoGridCoversAreNotFound() throws IOException {
+        ClimateGridFile grids = write(new int[][]{{0, 0}, {0, 2000}, {1000, 0}}, new int[][]{{0, 0}, {1000, 0}});
+        try {
+            assertEquals(-1, grids.find(-1000, 0));
+            assertEquals(-1, grids.find(0, 1000));
+            assertEquals(-1, grids.find(0, 3000));
+            assertEquals(-1, grids.find(500, 0));
+            assertEquals(-1, grids.find(2000, 0));
+        } finally {
+            grids.close();
+        }
+    }
+
+    @Test
+    public void holdsTheValuesOfBothGrids() throws IOException {
+        ClimateGridFile grids = write(new int[][]{{0, 0}, {0, 2000}}, new int[][]{{0, 0}, {0, 1000}});
+        try {
+            int both = grids.find(0, 0);
+            int rainfallOnly = grids.find(0, 2000);
+            int temperatureOnly = grids.find(0, 1000);
+            for (int month = 0; month < 12; month++) {
+                assertEquals(month + 1, grids.getRainfall(both, month));
+                assertEquals(month + 0.5f, grids.getTemperatureMax(both, month), 0);
+                assertEquals(month - 0.5f, grids.getTemperatureMin(both, month), 0);
+                assertEquals(month + 0.25f, grids.getTemperatureMean(both, month), 0);
+
+                assertEquals(month + 1, grids.getRainfall(rainfallOnly, month));
+                assertTrue(Float.isNaN(grids.getTemperatureMax(rainfallOnly, month)));
+                assertEquals(ClimateGridFile.MISSING_RAINFALL, grids.getRainfall(temperatureOnly, month));
+                assertEquals(month - 0.5f, grids.getTemperatureMin(temperatureOnly, month), 0);
+            }
+        } finally {
+            grids.close();
+        }
+    }
+
+    @Test
+    public void anEmptyGridFileFindsNothing() throws IOException {
+        ClimateGridFile grids = write(new int[0][], new int[0][]);
+        try {
+            assertEquals(0, grids.getRowCount());
+            assertEquals(-1, grids.find(0, 0));
+        } finally {
+            grids.close();
+        }
+    }
+
+    @Test
+    public void anUnsortedGridIsRefusedAndNothingIsWritten() throws IOException {
+        File target = new File(folder.getRoot(), "climate.grid");
+        try {
+            write(target, new int[][]{{1000, 0}, {0, 0}}, new int[][]{{0, 0}});
+            fail("An unsorted grid was written");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("is not sorted"));
+        }
+        assertFalse(target.exists());
+        assertFalse(new File(folder.getRoot(), "climate.grid.tmp").exists());
+    }
+
+    @Test(expected = IOException.class)
+    public void aFileThatIsNotAGridFileIsRefused() throws IOException {
+        File other = folder.newFile("other.grid");
+        Files.write(other.toPath(), "not a grid file".getBytes(StandardCharsets.ISO_8859_1));
+        ClimateGridFile.map(other.getPath());
+    }
+
+    private ClimateGridFile write(int[][] rainfallSquares, int[][] temperatureSquares) throws IOException {
+        File target = new File(folder.getRoot(), "climate.grid");
+        write(target, rainfallSquares, temperatureSquares);
+        return ClimateGridFile.map(target.getPath());
+    }
+
+    // Rainfall in month m is m + 1, and the maximum, minimum and mean temperatures are m + 0.5,
+    // m - 0.5 and m + 0.25
+    private void write(File target, int[][] rainfallSquares, int[][] temperatureSquares) throws IOException {
+        String rainfall = grid("rainfall.txt", rainfallSquares, 1, true);
+        String max = grid("max.txt", temperatureSquares, 0.5f, false);
+        String min = grid("min.txt", temperatureSquares, -0.5f, false);
+        String mean = grid("mean.txt", temperatureSquares, 0.25f, false);
+        ClimateGridFile.write(target.getPath(), rainfall, max, min, mean);
+    }
+
+    private String grid(String name, int[][] squares, float offset, boolean integers) throws IOException {
+        StringBuilder text = new StringBuilder(HEADER);
+        for (int[] square : squares) {
+            text.append(square[0]).append(',').append(square[1]);
+            for (int month = 0; month < 12; month++) {
+                text.append(',');
+                if (integers) {
+                    text.append(month + (int) offset);
+                } else {
+                    text.append(month + offset);
+                }
+            }
+            text.append('\n');
+        }
+        File file = new File(folder.getRoot(), name);
+        Files.write(file.toPath(), text.toString().getBytes(StandardCharsets.ISO_8859_1));
+        return file.getPath();
+    }
+}
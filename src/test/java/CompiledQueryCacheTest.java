@@ -0,0 +1,64 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CompiledQueryCacheTest {
+    @Test
+    public void whitespaceRunsCollapseAndEndsAreTrimmed() {
+        assertEquals("SELECT * WHERE { ?s ?p ?o }",
+                CompiledQueryCache.normalise("  SELECT  *\n\tWHERE {\r\n ?s ?p ?o }\n"));
+    }
+
+    @Test
+    public void commentsAreDropped() {
+        assertEquals("SELECT * WHERE { ?s ?p ?o }",
+                CompiledQueryCache.normalise("# every triple\nSELECT * # all of them\nWHERE { ?s ?p ?o } # done"));
+        assertEquals("SELECT ?s WHERE",
+                CompiledQueryCache.normalise("SELECT ?s# no space before\r\nWHERE"));
+    }
+
+    @Test
+    public void iRIsAreKeptAsWritten() {
+        assertEquals("SELECT * WHERE { ?s a <http://example.org/ontology#Station> }",
+                CompiledQueryCache.normalise("SELECT * WHERE { ?s a <http://example.org/ontology#Station> }"));
+        assertEquals("PREFIX base: <http://example.org/#> SELECT",
+                CompiledQueryCache.normalise("PREFIX base:   <http://example.org/#>\nSELECT"));
+    }
+
+    @Test
+    public void stringLiteralsAreKeptAsWritten() {
+        assertEquals("FILTER(?name = \"Galway  # city\")",
+                CompiledQueryCache.normalise("FILTER(?name = \"Galway  # city\")"));
+        assertEquals("FILTER(?name = 'a \\' # b')",
+                CompiledQueryCache.normalise("FILTER(?name = 'a \\' # b')   # trailing"));
+        assertEquals("FILTER(?name = \"say \\\"hi  there\\\"\")",
+                CompiledQueryCache.normalise("FILTER(?name = \"say \\\"hi  there\\\"\")"));
+    }
+
+    @Test
+    public void aLessThanIsNotMistakenForAnIRI() {
+        assertEquals("FILTER(?a < ?b) ?c", CompiledQueryCache.normalise("FILTER(?a  <   ?b)  # less\n ?c"));
+        assertEquals("FILTER(?a<?b) ?c", CompiledQueryCache.normalise("FILTER(?a<?b)   # less\n ?c"));
+    }
+
+    @Test
+    public void queriesDifferingOnlyInLayoutShareAnEntry() {
+        CompiledQueryCache cache = new CompiledQueryCache(2);
+        CompiledQuery first = cache.get("SELECT * WHERE { ?s ?p ?o }");
+        assertSame(first, cache.get("SELECT *   # all\nWHERE {\n  ?s ?p ?o\n}"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void theLeastRecentlyUsedQueryIsEvicted() {
+        CompiledQueryCache cache = new CompiledQueryCache(2);
+        CompiledQuery first = cache.get("SELECT * WHERE { ?s ?p 1 }");
+        CompiledQuery second = cache.get("SELECT * WHERE { ?s ?p 2 }");
+        cache.get("SELECT * WHERE { ?s ?p 1 }");
+        cache.get("SELECT * WHERE { ?s ?p 3 }");
+
+        assertEquals(2, cache.size());
+        assertSame(first, cache.get("SELECT * WHERE { ?s ?p 1 }"));
+        assertNotSame(second, cache.get("SELECT * WHERE { ?s ?p 2 }"));
+    }
+}
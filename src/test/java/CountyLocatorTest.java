@@ -0,0 +1,57 @@
+import com.esri.core.geometry.Geometry;
+import com.esri.core.geometry.Polygon;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class CountyLocatorTest {
+    @Test
+    public void findsTheCountyHoldingThePoint() {
+        CountyLocator locator = new CountyLocator(Arrays.<Geometry>asList(square(-10, 52, 1), square(-8, 52, 1)));
+        assertEquals(2, locator.size());
+        assertEquals(0, locator.locate(-9.5, 52.5));
+        assertEquals(1, locator.locate(-7.5, 52.5));
+    }
+
+    @Test
+    public void aPointInNoCountyIsNotFound() {
+        CountyLocator locator = new CountyLocator(Arrays.<Geometry>asList(square(-10, 52, 1), square(-8, 52, 1)));
+        assertEquals(-1, locator.locate(-8.5, 52.5));
+        assertEquals(-1, locator.locate(0, 0));
+    }
+
+    @Test
+    public void overlappingCountiesGoToTheFirstInTheList() {
+        Geometry big = square(-10, 52, 2);
+        Geometry small = square(-9.5, 52.5, 1);
+        assertEquals(0, new CountyLocator(Arrays.asList(big, small)).locate(-9, 53));
+        assertEquals(0, new CountyLocator(Arrays.asList(small, big)).locate(-9, 53));
+        assertEquals(1, new CountyLocator(Arrays.asList(small, big)).locate(-8.2, 52.2));
+    }
+
+    @Test
+    public void aPointInsideTheBoundingBoxButOutsideTheCountyIsNotFound() {
+        // An L shape whose bounding box covers its missing corner
+        Polygon shape = new Polygon();
+        shape.startPath(0, 0);
+        shape.lineTo(0, 2);
+        shape.lineTo(1, 2);
+        shape.lineTo(1, 1);
+        shape.lineTo(2, 1);
+        shape.lineTo(2, 0);
+        CountyLocator locator = new CountyLocator(Arrays.<Geometry>asList(shape));
+        assertEquals(0, locator.locate(0.5, 1.5));
+        assertEquals(-1, locator.locate(1.5, 1.5));
+    }
+
+    private static Polygon square(double west, double south, double size) {
+        Polygon square = new Polygon();
+        square.startPath(west, south);
+        square.lineTo(west, south + size);
+        square.lineTo(west + size, south + size);
+        square.lineTo(west + size, south);
+        return square;
+    }
+}
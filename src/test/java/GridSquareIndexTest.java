@@ -0,0 +1,85 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GridSquareIndexTest {
+    @Test
+    public void getFindsOnlyTheExactSquare() {
+        GridSquareIndex<String> index = new GridSquareIndex<>();
+        index.put(5000, 7000, "a");
+        index.put(-3000, 2000, "b");
+
+        assertEquals("a", index.get(5000, 7000));
+        assertEquals("b", index.get(-3000, 2000));
+        assertNull(index.get(7000, 5000));
+        assertTrue(index.contains(5000, 7000));
+        assertFalse(index.contains(5000, 7001));
+    }
+
+    @Test
+    public void putAgainReplacesTheSquareAndKeepsItsId() {
+        GridSquareIndex<String> index = new GridSquareIndex<>();
+        index.put(0, 0, "a");
+        index.put(1000, 0, "b");
+        index.put(0, 0, "c");
+
+        assertEquals(2, index.size());
+        assertEquals("c", index.getSquare(0));
+        assertEquals("c", index.get(0, 0));
+    }
+
+    @Test
+    public void growsPastItsInitialCapacity() {
+        GridSquareIndex<Integer> index = new GridSquareIndex<>();
+        for (int i = 0; i < 5000; i++) {
+            index.put(i * 1000, -i * 1000, i);
+        }
+        assertEquals(5000, index.size());
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(Integer.valueOf(i), index.get(i * 1000, -i * 1000));
+            assertEquals(i * 1000, index.getEasting(i));
+            assertEquals(-i * 1000, index.getNorthing(i));
+        }
+    }
+
+    @Test
+    public void aSquareIsNotAdjacentToItself() {
+        GridSquareIndex<String> index = new GridSquareIndex<>();
+        index.put(5000, 5000, "a");
+        assertNull(index.findAdjacent(5000, 5000));
+    }
+
+    @Test
+    public void adjacencyTakesEastingInclusiveAndNorthingExclusive() {
+        GridSquareIndex<String> index = new GridSquareIndex<>();
+        index.put(6000, 5000, "east");
+        assertEquals("east", index.findAdjacent(5000, 5000));
+        assertNull(index.findAdjacent(4999, 5000));
+
+        index = new GridSquareIndex<>();
+        index.put(5000, 6000, "north");
+        assertEquals("north", index.findAdjacent(5000, 5001));
+        assertNull(index.findAdjacent(5000, 5000));
+    }
+
+    @Test
+    public void theEarliestRegisteredAdjacentSquareWins() {
+        GridSquareIndex<String> index = new GridSquareIndex<>();
+        index.put(5900, 5500, "first");
+        index.put(4500, 4500, "second");
+        assertEquals("first", index.findAdjacent(5000, 5000));
+
+        index = new GridSquareIndex<>();
+        index.put(4500, 4500, "first");
+        index.put(5900, 5500, "second");
+        assertEquals("first", index.findAdjacent(5000, 5000));
+    }
+
+    @Test
+    public void adjacencyWorksAcrossNegativeCells() {
+        GridSquareIndex<String> index = new GridSquareIndex<>();
+        index.put(-500, -999, "a");
+        assertEquals("a", index.findAdjacent(400, -100));
+        assertNull(index.findAdjacent(600, -100));
+    }
+}
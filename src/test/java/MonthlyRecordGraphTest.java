@@ -0,0 +1,162 @@
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class MonthlyRecordGraphTest {
+    private static final Node COUNTY = NodeFactory.createURI(OntologyVocabulary.NAMESPACE + "Galway");
+    private static final Node UNKNOWN_RECORD = OntologyVocabulary.rainRecord(99);
+
+    private Graph source;
+    // The triples of source in the order they were added, which decides which of two clashing triples
+    // the columns keep
+    private final List<Triple> added = new ArrayList<>();
+    private Graph rest;
+    private MonthlyRecordGraph records;
+
+    @Before
+    public void load() {
+        source = GraphFactory.createGraphMem();
+        Node first = OntologyVocabulary.gridSquare(1);
+        Node second = OntologyVocabulary.gridSquare(2);
+        square(first, 0, 0);
+        square(second, 1000, 0);
+        add(Triple.create(COUNTY, OntologyVocabulary.TYPE, NodeFactory.createURI(OntologyVocabulary.NAMESPACE + "County")));
+
+        rain(1, first, 0, 120);
+        rain(2, first, 1, 80);
+        rain(3, second, 0, 95);
+        temperature(1, first, 0, 8.5f, 4.25f, 0.5f);
+        temperature(2, second, 11, -1.5f, -2.5f, -3.5f);
+
+        // Triples the columns cannot hold, which go to the ordinary graph instead
+        add(Triple.create(OntologyVocabulary.rainRecord(1), OntologyVocabulary.RAINFALL, OntologyVocabulary.literal(121)));
+        add(Triple.create(OntologyVocabulary.rainRecord(2), OntologyVocabulary.RAINFALL_AT, COUNTY));
+        add(Triple.create(OntologyVocabulary.rainRecord(3), OntologyVocabulary.HAPPENED_AT, COUNTY));
+
+        rest = GraphFactory.createGraphMem();
+        records = new MonthlyRecordGraph();
+        StreamRDF splitter = records.splitter(StreamRDFLib.graph(rest));
+        splitter.start();
+        for (Triple triple : added) {
+            splitter.triple(triple);
+        }
+        splitter.finish();
+    }
+
+    @Test
+    public void holdsTheRecordTriplesItCanAndPassesOnTheRest() {
+        assertEquals(5, records.getRecordCount());
+        assertEquals(source.size(), records.size() + rest.size());
+        assertTrue(rest.contains(OntologyVocabulary.rainRecord(1), OntologyVocabulary.RAINFALL, OntologyVocabulary.literal(121)));
+        assertTrue(rest.contains(OntologyVocabulary.rainRecord(3), OntologyVocabulary.HAPPENED_AT, COUNTY));
+        assertFalse(rest.contains(OntologyVocabulary.rainRecord(1), OntologyVocabulary.RAINFALL, OntologyVocabulary.literal(120)));
+    }
+
+    @Test
+    public void findMatchesTheOrdinaryGraphForEveryPattern() {
+        Set<Node> subjects = new LinkedHashSet<>();
+        Set<Node> predicates = new LinkedHashSet<>();
+        Set<Node> objects = new LinkedHashSet<>();
+        for (Triple triple : source.find(Node.ANY, Node.ANY, Node.ANY).toList()) {
+            subjects.add(triple.getSubject());
+            predicates.add(triple.getPredicate());
+            objects.add(triple.getObject());
+        }
+        subjects.add(Node.ANY);
+        subjects.add(UNKNOWN_RECORD);
+        predicates.add(Node.ANY);
+        predicates.add(OntologyVocabulary.TEMPERATURE_MAX_AT);
+        objects.add(Node.ANY);
+        objects.add(OntologyVocabulary.gridSquare(3));
+        objects.add(NodeFactory.createLiteral("120", XSDDatatype.XSDlong));
+
+        Graph union = MonthlyRecordGraph.loadModel(source, null).getGraph();
+        for (Node subject : subjects) {
+            for (Node predicate : predicates) {
+                for (Node object : objects) {
+                    assertEquals(subject + " " + predicate + " " + object,
+                            found(source, subject, predicate, object), found(union, subject, predicate, object));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void aConcreteObjectNoRecordCanHaveFindsNothing() {
+        assertTrue(records.find(Node.ANY, OntologyVocabulary.HAPPENED_AT, COUNTY).toList().isEmpty());
+        assertTrue(records.find(Node.ANY, OntologyVocabulary.HAPPENED_AT, OntologyVocabulary.gridSquare(3)).toList().isEmpty());
+        assertTrue(records.find(Node.ANY, OntologyVocabulary.TYPE, OntologyVocabulary.GRID_SQUARE_LOCATION).toList().isEmpty());
+        assertTrue(records.find(UNKNOWN_RECORD, Node.ANY, Node.ANY).toList().isEmpty());
+    }
+
+    @Test
+    public void findNarrowsToTheRecordsOfOneSquare() {
+        List<Triple> found = records.find(Node.ANY, OntologyVocabulary.HAPPENED_AT, OntologyVocabulary.gridSquare(1)).toList();
+        Set<Node> subjects = new HashSet<>();
+        for (Triple triple : found) {
+            subjects.add(triple.getSubject());
+        }
+        Set<Node> expected = new HashSet<>();
+        expected.add(OntologyVocabulary.rainRecord(1));
+        expected.add(OntologyVocabulary.rainRecord(2));
+        expected.add(OntologyVocabulary.temperatureRecord(1));
+        assertEquals(expected, subjects);
+        assertEquals(3, found.size());
+    }
+
+    @Test
+    public void findMatchesLiteralsByValue() {
+        List<Triple> found = records.find(Node.ANY, OntologyVocabulary.RAINFALL,
+                NodeFactory.createLiteral("95", XSDDatatype.XSDlong)).toList();
+        assertEquals(1, found.size());
+        assertEquals(OntologyVocabulary.rainRecord(3), found.get(0).getSubject());
+    }
+
+    private void square(Node square, int easting, int northing) {
+        add(Triple.create(square, OntologyVocabulary.TYPE, OntologyVocabulary.GRID_SQUARE_LOCATION));
+        add(Triple.create(square, OntologyVocabulary.EASTING, OntologyVocabulary.literal(easting)));
+        add(Triple.create(square, OntologyVocabulary.NORTHING, OntologyVocabulary.literal(northing)));
+    }
+
+    private void rain(int id, Node square, int month, int rainfall) {
+        Node record = OntologyVocabulary.rainRecord(id);
+        add(Triple.create(record, OntologyVocabulary.TYPE, OntologyVocabulary.RAINFALL_RECORD));
+        add(Triple.create(record, OntologyVocabulary.RAINFALL, OntologyVocabulary.literal(rainfall)));
+        add(Triple.create(record, OntologyVocabulary.MONTH_HAPPENED, OntologyVocabulary.MONTHS[month]));
+        add(Triple.create(record, OntologyVocabulary.HAPPENED_AT, square));
+    }
+
+    private void temperature(int id, Node square, int month, float max, float mean, float min) {
+        Node record = OntologyVocabulary.temperatureRecord(id);
+        add(Triple.create(record, OntologyVocabulary.TYPE, OntologyVocabulary.TEMPERATURE_RECORD));
+        add(Triple.create(record, OntologyVocabulary.TEMPERATURE_MAX, OntologyVocabulary.literal(max)));
+        add(Triple.create(record, OntologyVocabulary.TEMPERATURE_MEAN, OntologyVocabulary.literal(mean)));
+        add(Triple.create(record, OntologyVocabulary.TEMPERATURE_MIN, OntologyVocabulary.literal(min)));
+        add(Triple.create(record, OntologyVocabulary.MONTH_HAPPENED, OntologyVocabulary.MONTHS[month]));
+        add(Triple.create(record, OntologyVocabulary.HAPPENED_AT, square));
+    }
+
+    private void add(Triple triple) {
+        source.add(triple);
+        added.add(triple);
+    }
+
+    private static Set<Triple> found(Graph graph, Node subject, Node predicate, Node object) {
+        return new HashSet<>(graph.find(subject, predicate, object).toList());
+    }
+}
@@ -0,0 +1,55 @@
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class RainfallLoaderTest {
+    private static final String HEADER = "east,north,m1,m2,m3,m4,m5,m6,m7,m8,m9,m10,m11,m12\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void aRowOnAStationSquareUsesThatSquareEvenWithAnEarlierNeighbour() throws Exception {
+        Model model = ModelFactory.createDefaultModel();
+        Resource neighbour = model.createResource(OntologyVocabulary.gridSquare(1).getURI());
+        Resource station = model.createResource(OntologyVocabulary.gridSquare(2).getURI());
+        GridSquareIndex<Resource> squares = new GridSquareIndex<>();
+        squares.put(500, 0, neighbour);
+        squares.put(0, 0, station);
+
+        Graph loaded = load(squares, 3,
+                "0,0,1,2,3,4,5,6,7,8,9,10,11,12\n"
+                        + "1500,0,1,2,3,4,5,6,7,8,9,10,11,12\n"
+                        + "9000,9000,1,2,3,4,5,6,7,8,9,10,11,12\n");
+
+        // Twelve records on the station square, twelve on a new square next to the neighbour, none
+        // for the row near no station
+        assertEquals(12, loaded.find(Node.ANY, OntologyVocabulary.HAPPENED_AT, station.asNode()).toList().size());
+        assertFalse(loaded.contains(station.asNode(), OntologyVocabulary.ADJACENT_TO, Node.ANY));
+        Node added = OntologyVocabulary.gridSquare(3);
+        assertEquals(12, loaded.find(Node.ANY, OntologyVocabulary.HAPPENED_AT, added).toList().size());
+        assertTrue(loaded.contains(added, OntologyVocabulary.ADJACENT_TO, neighbour.asNode()));
+        assertEquals(24, loaded.find(Node.ANY, OntologyVocabulary.TYPE, OntologyVocabulary.RAINFALL_RECORD).toList().size());
+    }
+
+    private Graph load(GridSquareIndex<Resource> squares, int firstGridSquareID, String rows) throws Exception {
+        File grid = folder.newFile("rainfall.txt");
+        Files.write(grid.toPath(), (HEADER + rows).getBytes(StandardCharsets.ISO_8859_1));
+        Graph graph = GraphFactory.createGraphMem();
+        new RainfallLoader(grid.getPath(), squares, firstGridSquareID).load(StreamRDFLib.graph(graph));
+        return graph;
+    }
+}
@@ -0,0 +1,85 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ResultCacheTest {
+    private static final CompiledQuery FIRST = CompiledQuery.compile("SELECT * WHERE { ?s ?p 1 }");
+    private static final CompiledQuery SECOND = CompiledQuery.compile("SELECT * WHERE { ?s ?p 2 }");
+    private static final CompiledQuery THIRD = CompiledQuery.compile("SELECT * WHERE { ?s ?p 3 }");
+
+    @Test
+    public void queriesDifferingOnlyInLayoutShareAResult() {
+        ResultCache cache = new ResultCache(8, 1000, "v1");
+        cache.put(FIRST, "one");
+        assertEquals("one", cache.get(CompiledQuery.compile("SELECT *  # again\nWHERE { ?s ?p 1 }")));
+        assertNull(cache.get(SECOND));
+    }
+
+    @Test
+    public void aNewVersionDropsEverything() {
+        ResultCache cache = new ResultCache(8, 1000, "v1");
+        cache.put(FIRST, "one");
+        cache.setVersion("v2");
+
+        assertEquals("v2", cache.getVersion());
+        assertEquals(0, cache.size());
+        assertNull(cache.get(FIRST));
+    }
+
+    @Test
+    public void settingTheSameVersionKeepsTheResults() {
+        ResultCache cache = new ResultCache(8, 1000, "v1");
+        cache.put(FIRST, "one");
+        cache.setVersion("v1");
+        assertEquals("one", cache.get(FIRST));
+    }
+
+    @Test
+    public void aResultFromAnotherVersionIsNotKept() {
+        ResultCache cache = new ResultCache(8, 1000, "v1");
+        cache.setVersion("v2");
+        cache.put(FIRST, "stale", "v1");
+        assertNull(cache.get(FIRST));
+        cache.put(FIRST, "fresh", "v2");
+        assertEquals("fresh", cache.get(FIRST));
+    }
+
+    @Test
+    public void theLeastRecentlyUsedResultIsEvictedPastTheEntryLimit() {
+        ResultCache cache = new ResultCache(2, 1000, "v1");
+        cache.put(FIRST, "one");
+        cache.put(SECOND, "two");
+        cache.get(FIRST);
+        cache.put(THIRD, "three");
+
+        assertEquals(2, cache.size());
+        assertEquals("one", cache.get(FIRST));
+        assertNull(cache.get(SECOND));
+        assertEquals("three", cache.get(THIRD));
+    }
+
+    @Test
+    public void resultsAreEvictedPastTheCharacterLimit() {
+        ResultCache cache = new ResultCache(8, 10, "v1");
+        cache.put(FIRST, "12345");
+        cache.put(SECOND, "123456");
+        assertNull(cache.get(FIRST));
+        assertEquals("123456", cache.get(SECOND));
+
+        // Replacing a result counts only its new length
+        cache.put(SECOND, "1234");
+        cache.put(THIRD, "123456");
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void nothingIsKeptWhenTooLargeOrDisabled() {
+        ResultCache cache = new ResultCache(8, 3, "v1");
+        cache.put(FIRST, "1234");
+        assertEquals(0, cache.size());
+
+        cache = new ResultCache(0, 1000, "v1");
+        cache.put(FIRST, "one");
+        assertNull(cache.get(FIRST));
+    }
+}
@@ -0,0 +1,122 @@
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class StationHeightFunctionTest {
+    private static final String PREFIX = "PREFIX base: <" + OntologyVocabulary.NAMESPACE + ">\n";
+
+    private static Dataset dataset;
+
+    // Two stations share a height, and one has a height that is not a number
+    @BeforeClass
+    public static void load() {
+        Model model = ModelFactory.createDefaultModel();
+        Property height = model.createProperty(OntologyVocabulary.HEIGHT.getURI());
+        long[] heights = {40, 10, 25, 10, 300, -2};
+        for (int i = 0; i < heights.length; i++) {
+            model.add(model.createResource(OntologyVocabulary.NAMESPACE + "Station" + i), height, model.createTypedLiteral(heights[i]));
+        }
+        model.add(model.createResource(OntologyVocabulary.NAMESPACE + "StationUnknown"), height, "unknown");
+        dataset = DatasetFactory.create(model);
+    }
+
+    @Test
+    public void higherThanHoldsForEveryPairWithAGreaterHeight() {
+        Set<String> pairs = pairs("SELECT ?a ?b WHERE { ?a base:higherThan ?b }");
+        assertEquals(pairs("SELECT ?a ?b WHERE { ?a base:height ?ha . ?b base:height ?hb FILTER(?ha > ?hb) }"), pairs);
+        // Six stations with five distinct heights, the two at the same height not ranked against each other
+        assertEquals(14, pairs.size());
+    }
+
+    @Test
+    public void lowerThanHoldsForEveryPairWithASmallerHeight() {
+        Set<String> pairs = pairs("SELECT ?a ?b WHERE { ?a base:lowerThan ?b }");
+        assertEquals(pairs("SELECT ?a ?b WHERE { ?a base:height ?ha . ?b base:height ?hb FILTER(?ha < ?hb) }"), pairs);
+        assertEquals(14, pairs.size());
+    }
+
+    @Test
+    public void aBoundStationFindsTheStationsOnTheOtherSide() {
+        assertEquals(names("Station1", "Station3", "Station5"),
+                column("SELECT ?b WHERE { base:Station2 base:higherThan ?b }", "b"));
+        assertEquals(names("Station0", "Station2", "Station4"),
+                column("SELECT ?a WHERE { ?a base:higherThan base:Station1 }", "a"));
+        assertEquals(names("Station0", "Station1", "Station2", "Station3", "Station5"),
+                column("SELECT ?a WHERE { ?a base:lowerThan base:Station4 }", "a"));
+        assertEquals(names(), column("SELECT ?b WHERE { base:Station5 base:higherThan ?b }", "b"));
+    }
+
+    @Test
+    public void twoBoundStationsAreCompared() {
+        assertTrue(ask("ASK { base:Station0 base:higherThan base:Station2 }"));
+        assertFalse(ask("ASK { base:Station2 base:higherThan base:Station0 }"));
+        assertTrue(ask("ASK { base:Station2 base:lowerThan base:Station0 }"));
+        assertFalse(ask("ASK { base:Station1 base:higherThan base:Station3 }"));
+        assertFalse(ask("ASK { base:Station1 base:lowerThan base:Station3 }"));
+    }
+
+    @Test
+    public void aStationWithoutANumericHeightIsNeverRanked() {
+        assertFalse(ask("ASK { base:StationUnknown base:higherThan ?b }"));
+        assertFalse(ask("ASK { ?a base:higherThan base:StationUnknown }"));
+        assertFalse(ask("ASK { base:StationMissing base:lowerThan ?b }"));
+        assertFalse(ask("ASK { base:Station0 base:higherThan base:StationMissing }"));
+    }
+
+    @Test
+    public void aStationIsNeverHigherThanItself() {
+        assertFalse(ask("ASK { ?a base:higherThan ?a }"));
+        assertFalse(ask("ASK { ?a base:lowerThan ?a }"));
+    }
+
+    private static Set<String> pairs(String query) {
+        Set<String> pairs = new HashSet<>();
+        try (QueryExecution execution = CompiledQuery.compile(PREFIX + query).createExecution(dataset)) {
+            ResultSet results = execution.execSelect();
+            while (results.hasNext()) {
+                QuerySolution solution = results.next();
+                assertTrue("Duplicate pair " + solution, pairs.add(solution.get("a") + " " + solution.get("b")));
+            }
+        }
+        return pairs;
+    }
+
+    private static Set<String> column(String query, String variable) {
+        Set<String> values = new HashSet<>();
+        try (QueryExecution execution = CompiledQuery.compile(PREFIX + query).createExecution(dataset)) {
+            ResultSet results = execution.execSelect();
+            while (results.hasNext()) {
+                RDFNode value = results.next().get(variable);
+                values.add(value.asResource().getURI());
+            }
+        }
+        return values;
+    }
+
+    private static boolean ask(String query) {
+        try (QueryExecution execution = CompiledQuery.compile(PREFIX + query).createExecution(dataset)) {
+            return execution.execAsk();
+        }
+    }
+
+    private static Set<String> names(String... localNames) {
+        Set<String> names = new HashSet<>();
+        for (String localName : localNames) {
+            names.add(OntologyVocabulary.NAMESPACE + localName);
+        }
+        return names;
+    }
+}